@@ -52,19 +52,36 @@ public abstract class AbstractPlay2AssetsCompileMojo
             return;
         }
 
-        DirectoryScanner scanner = new DirectoryScanner();
-        scanner.setBasedir( assetsDirectory );
-        if ( getAssetsIncludes() != null )
+        String[] includes = getAssetsIncludes() != null ? getAssetsIncludes().split( "," ) : null;
+        String[] excludes = getAssetsExcludes() != null ? getAssetsExcludes().split( "," ) : null;
+        String[] fileNames =
+            isChangedFilesOnlySupported() ? getChangedFiles( assetsDirectory, includes, excludes ) : null;
+        if ( fileNames != null && fileNames.length == 0 )
         {
-            scanner.setIncludes( getAssetsIncludes().split( "," ) );
+            getLog().info( "No changed assets" );
+            File generatedDirectory = new File( project.getBuild().getDirectory(), TARGET_DIRECTORY_NAME );
+            if ( generatedDirectory.isDirectory() )
+            {
+                addTargetDirectoryToResources(); // assets compiled by previous builds
+            }
+            return;
         }
-        if ( getAssetsExcludes() != null )
+        if ( fileNames == null )
         {
-            scanner.setExcludes( getAssetsExcludes().split( "," ) );
+            DirectoryScanner scanner = new DirectoryScanner();
+            scanner.setBasedir( assetsDirectory );
+            if ( includes != null )
+            {
+                scanner.setIncludes( includes );
+            }
+            if ( excludes != null )
+            {
+                scanner.setExcludes( excludes );
+            }
+            scanner.addDefaultExcludes();
+            scanner.scan();
+            fileNames = scanner.getIncludedFiles();
         }
-        scanner.addDefaultExcludes();
-        scanner.scan();
-        String[] fileNames = scanner.getIncludedFiles();
         if ( fileNames.length > 0 )
         {
             File targetDirectory = new File( project.getBuild().getDirectory() );
@@ -91,6 +108,15 @@ public abstract class AbstractPlay2AssetsCompileMojo
 
     protected abstract String getAssetsExcludes();
 
+    /**
+     * Returns true if only files changed since previous build can be compiled, when they are known.
+     * Compilers of assets depending on other files should return false.
+     */
+    protected boolean isChangedFilesOnlySupported()
+    {
+        return true;
+    }
+
     protected abstract void compileAssets( File assetsSourceDirectory, String[] fileNames, File outputDirectory )
         throws AssetCompilationException, IOException, MojoExecutionException;
 
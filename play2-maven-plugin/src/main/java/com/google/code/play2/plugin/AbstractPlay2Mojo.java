@@ -31,6 +31,7 @@ import java.net.MalformedURLException;
 import java.net.URL;
 import java.net.URLClassLoader;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.ServiceLoader;
@@ -52,7 +53,9 @@ import org.apache.maven.plugins.annotations.Parameter;
 import org.apache.maven.project.MavenProject;
 import org.apache.maven.repository.RepositorySystem;
 
+import org.codehaus.plexus.util.AbstractScanner;
 import org.codehaus.plexus.util.FileUtils;
+import org.codehaus.plexus.util.SelectorUtils;
 
 import com.google.code.play2.provider.api.Play2Provider;
 import com.google.code.play2.provider.api.Play2Providers;
@@ -65,6 +68,19 @@ import com.google.code.play2.provider.api.Play2Providers;
 public abstract class AbstractPlay2Mojo
     extends AbstractMojo
 {
+    /**
+     * Project context key of absolute paths of files changed since previous build.
+     * Set by {@code play2:run} mojo for builds it executes, not set if all files have to be checked.
+     */
+    static final String CHANGED_FILES_CONTEXT_KEY = "play2.changedFiles";
+
+    /**
+     * Project context key of a set, to which mojos add absolute paths of changed files they selected
+     * with {@link #getChangedFiles(File, String[], String[])}. Set by {@code play2:run} mojo together
+     * with {@link #CHANGED_FILES_CONTEXT_KEY}, files not selected by any mojo stay in next builds' hints.
+     */
+    static final String HANDLED_CHANGED_FILES_CONTEXT_KEY = "play2.handledChangedFiles";
+
     /**
      * Used to automatically select one of the "well known" Play&#33; providers if no provider added explicitly as plugin's dependency.
      * 
@@ -230,6 +246,73 @@ public abstract class AbstractPlay2Mojo
         }
     }
 
+    /**
+     * Returns changed files in a directory, if changed files are known.
+     * <br>
+     * <br>
+     * Used instead of directory scanning. Files are selected like by {@code DirectoryScanner}
+     * with default excludes added.
+     *
+     * @param baseDirectory directory
+     * @param includes include patterns or null to include all files
+     * @param excludes exclude patterns or null
+     * @return sorted relative paths of existing changed files or null if changed files are not known
+     */
+    protected String[] getChangedFiles( File baseDirectory, String[] includes, String[] excludes )
+    {
+        @SuppressWarnings( "unchecked" )
+        Set<String> changedFilePaths = (Set<String>) project.getContextValue( CHANGED_FILES_CONTEXT_KEY );
+        if ( changedFilePaths == null )
+        {
+            return null;
+        }
+
+        @SuppressWarnings( "unchecked" )
+        Set<String> handledFilePaths = (Set<String>) project.getContextValue( HANDLED_CHANGED_FILES_CONTEXT_KEY );
+        String baseDirectoryPath = baseDirectory.getAbsolutePath() + File.separator;
+        List<String> result = new ArrayList<String>();
+        for ( String path: changedFilePaths )
+        {
+            if ( path.startsWith( baseDirectoryPath ) && new File( path ).isFile() )
+            {
+                String relativePath = path.substring( baseDirectoryPath.length() );
+                if ( ( includes == null || matchesAny( includes, relativePath ) )
+                    && ( excludes == null || !matchesAny( excludes, relativePath ) )
+                    && !matchesAny( AbstractScanner.DEFAULTEXCLUDES, relativePath ) )
+                {
+                    result.add( relativePath );
+                    if ( handledFilePaths != null )
+                    {
+                        handledFilePaths.add( path );
+                    }
+                }
+            }
+        }
+        Collections.sort( result );
+        getLog().debug( String.format( "%d changed file(s) in \"%s\"", Integer.valueOf( result.size() ),
+                                       baseDirectory.getAbsolutePath() ) );
+        return result.toArray( new String[result.size()] );
+    }
+
+    private static boolean matchesAny( String[] patterns, String relativePath )
+    {
+        for ( String pattern: patterns )
+        {
+            // the same normalization as in DirectoryScanner
+            String normalizedPattern =
+                pattern.trim().replace( '/', File.separatorChar ).replace( '\\', File.separatorChar );
+            if ( normalizedPattern.endsWith( File.separator ) )
+            {
+                normalizedPattern += "**";
+            }
+            if ( SelectorUtils.matchPath( normalizedPattern, relativePath ) )
+            {
+                return true;
+            }
+        }
+        return false;
+    }
+
     // Cached classloaders
     private static final ConcurrentHashMap<String, ClassLoader> CACHED_CLASS_LOADERS =
         new ConcurrentHashMap<String, ClassLoader>( 2 );
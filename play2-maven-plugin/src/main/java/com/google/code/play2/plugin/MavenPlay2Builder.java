@@ -18,7 +18,9 @@
 package com.google.code.play2.plugin;
 
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.lang.reflect.Array;
 import java.lang.reflect.InvocationTargetException;
 import java.util.ArrayList;
@@ -27,16 +29,30 @@ import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Queue;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.CRC32;
 
-import org.apache.maven.cli.event.ExecutionEventLogger;
 import org.apache.maven.execution.DefaultMavenExecutionRequest;
 import org.apache.maven.execution.DefaultMavenExecutionResult;
 import org.apache.maven.execution.MavenExecutionRequest;
 import org.apache.maven.execution.MavenExecutionResult;
 import org.apache.maven.execution.MavenSession;
+import org.apache.maven.execution.ProjectDependencyGraph;
 import org.apache.maven.lifecycle.LifecycleExecutor;
 import org.apache.maven.model.Resource;
 import org.apache.maven.plugin.MojoFailureException;
@@ -46,6 +62,7 @@ import org.apache.maven.project.MavenProject;
 
 import org.codehaus.plexus.PlexusContainer;
 import org.codehaus.plexus.util.DirectoryScanner;
+import org.codehaus.plexus.util.SelectorUtils;
 
 import com.google.code.play2.provider.api.AssetCompilationException;
 import com.google.code.play2.provider.api.Play2BuildError;
@@ -63,13 +80,15 @@ import com.google.code.play2.watcher.api.FileWatchException;
 import com.google.code.play2.watcher.api.FileWatchService;
 import com.google.code.play2.watcher.api.FileWatcher;
 
-import com.google.code.sbt.compiler.api.Analysis;
 import com.google.code.sbt.compiler.api.AnalysisProcessor;
 import com.google.code.sbt.compiler.api.CompilerException;
 import com.google.code.sbt.compiler.api.Compilers;
 
 public class MavenPlay2Builder implements Play2Builder, FileWatchCallback
 {
+    // How long close() waits for builds and change events processing before writing build state
+    private static final long TERMINATION_TIMEOUT_SECONDS = 10L;
+
     private List<MavenProject> projects;
 
     private String sourceEncoding;
@@ -78,8 +97,12 @@ public class MavenPlay2Builder implements Play2Builder, FileWatchCallback
 
     private List<String> additionalGoals;
 
+    private Map<String, List<String>> goalsRouting;
+
     private String assetsPrefix;
 
+    private long changeDebounceMillis;
+
     private Log logger;
 
     private MavenSession session;
@@ -96,24 +119,99 @@ public class MavenPlay2Builder implements Play2Builder, FileWatchCallback
 
     private FileWatcher watcher = null; // created after first successful build
 
+    private int runThreads;
+
+    private ExecutorService buildExecutor = null; // created on first build, reused by next builds
+
+    private ExecutorService parallelBuildExecutor = null; // created on first parallel build
+
+    private boolean backgroundBuild;
+
+    // Background builds state, guarded by backgroundBuildLock
+    private Object backgroundBuildLock = new Object();
+    private ExecutorService backgroundBuildExecutor = null; // created on first background build
+    private Future<?> lastBackgroundBuild = null;
+    private boolean backgroundBuildQueued = false;
+    private boolean backgroundBuildReload = false;
+    private Exception backgroundBuildFailure = null;
+    // Set when background build is scheduled, cleared when its result is consumed by build()
+    private volatile boolean backgroundBuildPending = false;
+
+    private boolean cancelSupersededBuilds;
+
+    // Output files fingerprints (path to last modified time, length and CRC32 checksum), null if disabled
+    private Map<String, long[]> outputFingerprints;
+
+    // Cancellation flag of the current build cycle, replaced at the beginning of every cycle
+    private volatile AtomicBoolean currentBuildCancelled = new AtomicBoolean();
+
+    // Serializes builds executed on request and background threads
+    private Object buildLock = new Object();
+
     // Flag to force a reload on the next request.
     // This is set if a compile error occurs, and also by the forceReload method on BuildLink, which is called for
     // example when evolutions have been applied.
 //    @volatile private var forceReloadNextTime = false
-    private boolean forceReloadNextTime = true;
+    private volatile boolean forceReloadNextTime = true;
     // Whether any source files have changed since the last request.
 //    @volatile private var changed = false
 //    private volatile boolean changed = false;
     private /*?volatile*/ Map<String, Long> changedFiles = new HashMap<String, Long>(); //TODO - moze od razu moduły, a nie pliki
     private Object changedFilesLock = new Object();
+    private long lastChangeTime = 0L; // guarded by changedFilesLock
+    // Changed files taken by the build attempt in progress, cleared when it succeeds or its files are restored
+    // (also when it is interrupted), guarded by changedFilesLock
+    private Map<String, Long> inFlightChangedFiles = null;
+    // Files reported by watcher, not recorded in "changedFiles" yet. Appended by watcher thread without locking,
+    // processed by changeEventsExecutor thread (or by the next build)
+    private Queue<File> changeEvents = new ConcurrentLinkedQueue<File>();
+    private Queue<Callable<Set<File>>> lostChangesRescans = new ConcurrentLinkedQueue<Callable<Set<File>>>();
+    // Number of queued change events and rescans, incremented before they are queued, decremented after they are
+    // recorded in "changedFiles", read without locking by isBuildRequired()
+    private AtomicInteger unrecordedChanges = new AtomicInteger();
+    private AtomicBoolean changeEventsProcessingScheduled = new AtomicBoolean();
+    private ExecutorService changeEventsExecutor;
+    // Number of file changes recorded so far, incremented inside "synchronized ( changedFilesLock )" blocks
+    private volatile long changesCount = 0L;
+    // Whether "changedFiles" map is not empty, written inside "synchronized ( changedFilesLock )" blocks,
+    // read without locking by isBuildRequired()
+    private volatile boolean changesPending = false;
+    // Set while build cycle is executed, requests must wait for its result
+    private volatile boolean buildInProgress = false;
 
     private boolean afterFirstSuccessfulBuild = false;
-    private Map<MavenProject, Map<String, File>> currentSourceMaps;
+    // Changed files not selected by any mojo using changed files hint, because goals selected by routing
+    // did not include such mojo. Added to hints of next builds until handled, guarded by buildLock.
+    private Set<String> unhandledChangedFiles = new HashSet<String>();
+    // Whether changed resources are copied without executing Maven build
+    private boolean syncResources;
+    private MavenPlay2ResourceSynchronizer resourceSynchronizer = null; // created on first use
+    // Sources and outputs state written on close and compared before the first build, null if disabled
+    private File stateFile;
+    private MavenPlay2ProjectIndex projectIndex = null; // created on first use
+    // Class to source indexes, updated by findSource() for modules rebuilt since its previous call,
+    // guarded by sourceIndexesLock
+    private Map<MavenProject, MavenPlay2SourceIndex> sourceIndexes =
+        new HashMap<MavenProject, MavenPlay2SourceIndex>();
+    private Set<MavenProject> outdatedSourceIndexes = new HashSet<MavenProject>();
+    // Length and modification time of analysis files which could not be read, guarded by sourceIndexesLock
+    private Map<MavenProject, String> unreadableAnalysisFiles = new HashMap<MavenProject, String>();
+    private Object sourceIndexesLock = new Object();
     private Map<MavenProject, Long> currentClasspathTimestamps;
     private Map<MavenProject, Set<String>> currentClasspathFilePaths;
+    // Output directories with changes not reported yet by consumeChangedOutputDirectories(), guarded by itself
+    private Set<File> changedOutputDirectories = new HashSet<File>();
+    // Output files modified and not reported yet by consumeChangedOutputFiles(), null if files were added or removed
+    private Set<File> changedOutputFiles = new HashSet<File>();
+    private Object changedOutputFilesLock = new Object();
+    // Output directories contents (relative, '/' separated path to file), replaced after every build
+    private volatile Map<File, Map<String, File>> currentOutputIndexes = new HashMap<File, Map<String, File>>();
 
     public MavenPlay2Builder( List<MavenProject> projects, String sourceEncoding, List<String> goals,
-                              List<String> additionalGoals, String assetsPrefix, Log logger, MavenSession session,
+                              List<String> additionalGoals, Map<String, List<String>> goalsRouting,
+                              String assetsPrefix, long changeDebounceMillis, int runThreads, boolean backgroundBuild,
+                              boolean cancelSupersededBuilds, boolean compareOutputContents, boolean syncResources,
+                              File stateFile, Log logger, MavenSession session,
                               LifecycleExecutor lifecycleExecutor, PlexusContainer container,
                               File templateCompilationOutputDirectory, AnalysisProcessor sbtAnalysisProcessor,
                               FileWatchService playWatchService )
@@ -122,7 +220,15 @@ public class MavenPlay2Builder implements Play2Builder, FileWatchCallback
         this.sourceEncoding = sourceEncoding;
         this.goals = goals;
         this.additionalGoals = additionalGoals;
+        this.goalsRouting = goalsRouting;
         this.assetsPrefix = assetsPrefix;
+        this.changeDebounceMillis = changeDebounceMillis;
+        this.runThreads = runThreads;
+        this.backgroundBuild = backgroundBuild;
+        this.cancelSupersededBuilds = cancelSupersededBuilds;
+        this.outputFingerprints = compareOutputContents ? new HashMap<String, long[]>() : null;
+        this.syncResources = syncResources;
+        this.stateFile = stateFile;
         this.logger = logger;
         this.session = session;
         this.lifecycleExecutor = lifecycleExecutor;
@@ -131,7 +237,17 @@ public class MavenPlay2Builder implements Play2Builder, FileWatchCallback
         this.sbtAnalysisProcessor = sbtAnalysisProcessor;
         this.playWatchService = playWatchService;
 
-        currentSourceMaps = new HashMap<MavenProject, Map<String, File>>( projects.size() );
+        changeEventsExecutor = Executors.newSingleThreadExecutor( new ThreadFactory()
+        {
+            @Override
+            public Thread newThread( Runnable r )
+            {
+                Thread thread = new Thread( r, "play2-change-events" );
+                thread.setDaemon( true );
+                return thread;
+            }
+        } ); // thread is started on first change
+
         currentClasspathTimestamps = new HashMap<MavenProject, Long>( projects.size() );
         currentClasspathFilePaths = new HashMap<MavenProject, Set<String>>( projects.size() );
         for ( MavenProject p: projects )
@@ -148,22 +264,266 @@ public class MavenPlay2Builder implements Play2Builder, FileWatchCallback
         {
             watcher.close();
         }
+        changeEventsExecutor.shutdown();
+        synchronized ( this )
+        {
+            if ( buildExecutor != null )
+            {
+                buildExecutor.shutdown();
+            }
+            if ( parallelBuildExecutor != null )
+            {
+                parallelBuildExecutor.shutdown();
+            }
+        }
+        synchronized ( backgroundBuildLock )
+        {
+            if ( backgroundBuildExecutor != null )
+            {
+                backgroundBuildExecutor.shutdownNow();
+            }
+        }
+        if ( stateFile != null )
+        {
+            writeState();
+        }
+    }
+
+    /**
+     * Writes sources and outputs state if everything was built, so the next {@code play2:run} execution
+     * can skip its initial build.
+     */
+    private void writeState()
+    {
+        synchronized ( buildLock ) // wait for running background build
+        {
+            if ( !awaitTermination( changeEventsExecutor ) || !awaitBuildExecutorsTermination() )
+            {
+                logger.debug( "Build or change events processing still running, build state not written" );
+                return;
+            }
+            processChangeEvents( false ); // events and rescans queued after change events processing stopped
+            boolean upToDate;
+            synchronized ( changedFilesLock )
+            {
+                upToDate = afterFirstSuccessfulBuild && !forceReloadNextTime && changedFiles.isEmpty()
+                    && inFlightChangedFiles == null;
+            }
+            if ( upToDate )
+            {
+                try
+                {
+                    MavenPlay2BuilderState.calculate( projects, getAllGoals() ).writeToFile( stateFile );
+                }
+                catch ( IOException e )
+                {
+                    logger.warn( "Cannot write build state to \"" + stateFile.getAbsolutePath() + "\" file", e );
+                }
+            }
+        }
+    }
+
+    /**
+     * Maven builds are not interrupted, a build left by interrupted background build can still write outputs.
+     */
+    private boolean awaitBuildExecutorsTermination()
+    {
+        ExecutorService mavenBuildExecutor;
+        ExecutorService mavenParallelBuildExecutor;
+        synchronized ( this )
+        {
+            mavenBuildExecutor = buildExecutor;
+            mavenParallelBuildExecutor = parallelBuildExecutor;
+        }
+        return awaitTermination( mavenBuildExecutor ) && awaitTermination( mavenParallelBuildExecutor );
+    }
+
+    // executor must be already shut down
+    private static boolean awaitTermination( ExecutorService executor )
+    {
+        if ( executor == null )
+        {
+            return true;
+        }
+        try
+        {
+            return executor.awaitTermination( TERMINATION_TIMEOUT_SECONDS, TimeUnit.SECONDS );
+        }
+        catch ( InterruptedException e )
+        {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    /**
+     * Returns true if the state written by previous {@code play2:run} execution is still valid.
+     * The state file is deleted, it will be written again on close.
+     */
+    private boolean isPreviousStateUpToDate()
+    {
+        MavenPlay2BuilderState previousState = MavenPlay2BuilderState.readFromFile( stateFile );
+        if ( previousState == null )
+        {
+            return false;
+        }
+        if ( !stateFile.delete() )
+        {
+            logger.debug( "Cannot delete \"" + stateFile.getAbsolutePath() + "\" file" );
+        }
+        return previousState.isUpToDate( MavenPlay2BuilderState.calculate( projects, getAllGoals() ) );
+    }
+
+    private List<String> getAllGoals()
+    {
+        List<String> result = new ArrayList<String>( goals );
+        result.addAll( additionalGoals );
+        return result;
     }
 
     @Override /* FileWatchCallback */
     public void onChange( File changedFile )
     {
-        String path = changedFile.getAbsolutePath();
-        Long currentTimestamp = Long.valueOf( changedFile.lastModified() );
-        synchronized ( changedFilesLock )
+        unrecordedChanges.incrementAndGet();
+        changeEvents.add( changedFile );
+        scheduleChangeEventsProcessing();
+    }
+
+    @Override /* FileWatchCallback */
+    public void onChange( Set<File> files )
+    {
+        unrecordedChanges.addAndGet( files.size() );
+        changeEvents.addAll( files );
+        scheduleChangeEventsProcessing();
+    }
+
+    @Override /* FileWatchCallback */
+    public void onChangesLost( Callable<Set<File>> rescan )
+    {
+        unrecordedChanges.incrementAndGet();
+        lostChangesRescans.add( rescan );
+        scheduleChangeEventsProcessing();
+    }
+
+    /**
+     * Schedules processing of queued change events, unless it is already scheduled and not started yet
+     * (it will process all events queued before it starts). Does not block watcher thread.
+     */
+    private void scheduleChangeEventsProcessing()
+    {
+        if ( changeEventsProcessingScheduled.compareAndSet( false, true ) )
+        {
+            try
+            {
+                changeEventsExecutor.execute( new Runnable()
+                {
+                    @Override
+                    public void run()
+                    {
+                        changeEventsProcessingScheduled.set( false ); // events added from now on need next run
+                        processChangeEvents( backgroundBuild );
+                    }
+                } );
+            }
+            catch ( RejectedExecutionException e )
+            {
+                // closed
+            }
+        }
+    }
+
+    /**
+     * Records queued changed files with their current timestamps, every file is checked once.
+     * Files changed when change events were lost are found by queued rescans first.
+     *
+     * @param scheduleBuild whether background build should be scheduled if there are new changes
+     */
+    private void processChangeEvents( boolean scheduleBuild )
+    {
+        int taken = 0; // queued items taken by this call, not counted as unrecorded until they are recorded
+        Callable<Set<File>> rescan;
+        while ( ( rescan = lostChangesRescans.poll() ) != null )
+        {
+            taken++;
+            try
+            {
+                Set<File> files = rescan.call();
+                unrecordedChanges.addAndGet( files.size() );
+                changeEvents.addAll( files );
+            }
+            catch ( Exception e )
+            {
+                logger.warn( "Rescan after lost file change events failed: " + e.getMessage() );
+            }
+        }
+        Map<String, Long> timestamps = new HashMap<String, Long>();
+        File changedFile;
+        while ( ( changedFile = changeEvents.poll() ) != null )
+        {
+            taken++;
+            String path = changedFile.getAbsolutePath();
+            if ( !timestamps.containsKey( path ) )
+            {
+                timestamps.put( path, Long.valueOf( changedFile.lastModified() ) );
+            }
+        }
+        boolean changed = false;
+        if ( !timestamps.isEmpty() )
+        {
+            synchronized ( changedFilesLock )
+            {
+                for ( Map.Entry<String, Long> entry: timestamps.entrySet() )
+                {
+                    changed = recordChange( entry.getKey(), entry.getValue() ) || changed;
+                }
+            }
+        }
+        unrecordedChanges.addAndGet( -taken ); // after "changesPending" is set
+        if ( changed && scheduleBuild )
+        {
+            scheduleBackgroundBuild();
+        }
+    }
+
+    // must be called inside "synchronized ( changedFilesLock )" block
+    private void restoreChangedFiles( Map<String, Long> prevChangedFiles )
+    {
+        for ( Map.Entry<String, Long> entry: prevChangedFiles.entrySet() )
+        {
+            if ( !changedFiles.containsKey( entry.getKey() ) ) // newer timestamps are kept
+            {
+                changedFiles.put( entry.getKey(), entry.getValue() );
+            }
+        }
+        changesPending = !changedFiles.isEmpty();
+        inFlightChangedFiles = null;
+    }
+
+    // must be called inside "synchronized ( changedFilesLock )" block
+    private boolean recordChange( String path, Long currentTimestamp )
+    {
+        Long prevTimestamp = changedFiles.get( path );
+        if ( prevTimestamp == null || !prevTimestamp.equals( currentTimestamp ) )
         {
-            Long prevTimestamp = changedFiles.get( path );
-            if ( prevTimestamp == null || !prevTimestamp.equals( currentTimestamp ) )
+            logger.debug( "\"" + path + "\" file changed" );
+            changedFiles.put( path, currentTimestamp );
+            changesPending = true;
+            changesCount++;
+            lastChangeTime = System.currentTimeMillis();
+            if ( cancelSupersededBuilds )
             {
-                logger.debug( "\"" + path + "\" file changed" );
-                changedFiles.put( path, currentTimestamp );
+                currentBuildCancelled.set( true ); // no-op if there is no build running
             }
+            return true;
         }
+        return false;
+    }
+
+    @Override /* Play2Builder */
+    public boolean isBuildRequired()
+    {
+        return forceReloadNextTime || changesPending || unrecordedChanges.get() > 0 || !lostChangesRescans.isEmpty()
+            || backgroundBuildPending || buildInProgress;
     }
 
     @Override /* Play2Builder */
@@ -172,101 +532,307 @@ public class MavenPlay2Builder implements Play2Builder, FileWatchCallback
         forceReloadNextTime = true;
     }
 
+    @Override /* Play2Builder */
+    public long getChangesCount()
+    {
+        return changesCount;
+    }
+
+    @Override /* Play2Builder */
+    public Set<File> consumeChangedOutputDirectories()
+    {
+        synchronized ( changedOutputDirectories )
+        {
+            Set<File> result = new HashSet<File>( changedOutputDirectories );
+            changedOutputDirectories.clear();
+            return result;
+        }
+    }
+
+    @Override /* Play2Builder */
+    public Set<File> consumeChangedOutputFiles()
+    {
+        synchronized ( changedOutputFilesLock )
+        {
+            Set<File> result = changedOutputFiles;
+            changedOutputFiles = new HashSet<File>();
+            return result;
+        }
+    }
+
+    @Override /* Play2Builder */
+    public Map<String, File> getOutputIndex( List<File> outputDirectories )
+    {
+        Map<File, Map<String, File>> outputIndexes = currentOutputIndexes;
+        Map<String, File> result = new HashMap<String, File>();
+        for ( int i = outputDirectories.size() - 1; i >= 0; i-- ) // files from preceding directories win
+        {
+            Map<String, File> outputIndex = outputIndexes.get( outputDirectories.get( i ) );
+            if ( outputIndex == null )
+            {
+                return null; // not scanned yet
+            }
+            result.putAll( outputIndex );
+        }
+        return result;
+    }
+
     @Override /* Play2Builder */
     public Object[] findSource( String className, Integer line )
     {
         Object[] result = null;
         String topType = className.split( "\\$" )[0];
-        for ( Map<String, File> sourceMap: currentSourceMaps.values() )
+        File sourceFile = findSourceFile( topType );
+        if ( sourceFile != null )
         {
-            File sourceFile = sourceMap.get( topType );
-            if ( sourceFile != null )
+            result = new Object[] { sourceFile, line };
+            if ( sourceFile.getAbsolutePath().startsWith( templateCompilationOutputDirectory.getAbsolutePath() ) )
             {
-                result = new Object[] { sourceFile, line };
-                if ( sourceFile.getAbsolutePath().startsWith( templateCompilationOutputDirectory.getAbsolutePath() ) )
+                try
                 {
-                    try
+                    Play2TemplateSourcePositionMapper mapper = new Play2TemplateSourcePositionMapper();
+                    mapper.setCharsetName( sourceEncoding );
+                    Play2TemplateGeneratedSource template = mapper.getGeneratedSource( sourceFile );
+                    if ( template != null )
                     {
-                        Play2TemplateSourcePositionMapper mapper = new Play2TemplateSourcePositionMapper();
-                        mapper.setCharsetName( sourceEncoding );
-                        Play2TemplateGeneratedSource template = mapper.getGeneratedSource( sourceFile );
-                        if ( template != null )
+                        File originalSourceFile = new File( template.getSourceFileName() );
+                        Integer originalLine = null;
+                        if ( line != null )
                         {
-                            File originalSourceFile = new File( template.getSourceFileName() );
-                            Integer originalLine = null;
-                            if ( line != null )
-                            {
-                                originalLine = Integer.valueOf( template.mapLine( line.intValue() ) );
-                            }
-                            result = new Object[] { originalSourceFile, originalLine };
+                            originalLine = Integer.valueOf( template.mapLine( line.intValue() ) );
                         }
-                    }
-                    catch ( IOException e )
-                    {
-                        // ignore
-                    }
-                    catch ( RuntimeException e )
-                    {
-                        // ignore
+                        result = new Object[] { originalSourceFile, originalLine };
                     }
                 }
-                break;
+                catch ( IOException e )
+                {
+                    // ignore
+                }
+                catch ( RuntimeException e )
+                {
+                    // ignore
+                }
             }
         }
         return result;
     }
 
+    private File findSourceFile( String className )
+    {
+        synchronized ( sourceIndexesLock )
+        {
+            for ( Iterator<MavenProject> iter = outdatedSourceIndexes.iterator(); iter.hasNext(); )
+            {
+                MavenProject p = iter.next();
+                File analysisFile = defaultAnalysisCacheFile( p );
+                if ( !analysisFile.isFile() )
+                {
+                    // module without compiled sources
+                    sourceIndexes.remove( p );
+                    unreadableAnalysisFiles.remove( p );
+                    iter.remove();
+                    continue;
+                }
+                String analysisFileState = analysisFile.length() + ":" + analysisFile.lastModified();
+                if ( analysisFileState.equals( unreadableAnalysisFiles.get( p ) ) )
+                {
+                    continue; // not changed since the last failed attempt
+                }
+                MavenPlay2SourceIndex sourceIndex = sourceIndexes.get( p );
+                if ( sourceIndex == null )
+                {
+                    sourceIndex = new MavenPlay2SourceIndex( new File( p.getBuild().getOutputDirectory() ) );
+                    sourceIndexes.put( p, sourceIndex );
+                }
+                try
+                {
+                    sourceIndex.update( sbtAnalysisProcessor.readFromFile( analysisFile ) );
+                    unreadableAnalysisFiles.remove( p );
+                    iter.remove();
+                }
+                catch ( RuntimeException e )
+                {
+                    // analysis file being written by a build in progress, try again when it changes
+                    unreadableAnalysisFiles.put( p, analysisFileState );
+                }
+            }
+            for ( MavenProject p: projects )
+            {
+                MavenPlay2SourceIndex sourceIndex = sourceIndexes.get( p );
+                File sourceFile = sourceIndex != null ? sourceIndex.findSource( className ) : null;
+                if ( sourceFile != null )
+                {
+                    return sourceFile;
+                }
+            }
+        }
+        return null;
+    }
+
     @Override /* Play2Builder */
     public boolean build() throws Play2BuildFailure, Play2BuildError/*Play2BuildException*/
     {
+        boolean reloadAfterBackgroundBuilds = false;
+        if ( backgroundBuild )
+        {
+            reloadAfterBackgroundBuilds = awaitBackgroundBuilds();
+        }
+        // build changes detected after the last background build started
+        // (or all changes, if background builds are disabled)
+        boolean reload = internalBuild();
+        return reload || reloadAfterBackgroundBuilds;
+    }
+
+    private boolean internalBuild() throws Play2BuildFailure, Play2BuildError
+    {
+        synchronized ( buildLock )
+        {
+            buildInProgress = true;
+            try
+            {
+                return executeBuildCycle();
+            }
+            finally
+            {
+                synchronized ( changedFilesLock )
+                {
+                    if ( inFlightChangedFiles != null ) // build attempt interrupted or failed unexpectedly
+                    {
+                        restoreChangedFiles( inFlightChangedFiles );
+                    }
+                }
+                buildInProgress = false;
+            }
+        }
+    }
+
+    private boolean executeBuildCycle() throws Play2BuildFailure, Play2BuildError
+    {
+        // build cancelled by newer changes is restarted together with them, until some build is not cancelled
+        Boolean reload;
+        do
+        {
+            reload = executeBuildAttempt();
+        }
+        while ( reload == null );
+        return reload.booleanValue();
+    }
+
+    /**
+     * Builds changed modules.
+     *
+     * @return whether the application should be reloaded or null if the build was cancelled
+     *         and has to be restarted
+     */
+    private Boolean executeBuildAttempt() throws Play2BuildFailure, Play2BuildError
+    {
+        processChangeEvents( false ); // events not processed yet by changeEventsExecutor, this build will include them
+        waitForQuietPeriod();
+
         Set<String> changedFilePaths = null;
         Map<String, Long> prevChangedFiles = new HashMap<String, Long>();
+        AtomicBoolean cancelled = new AtomicBoolean();
         synchronized ( changedFilesLock )
         {
+            currentBuildCancelled = cancelled;
             if ( !changedFiles.isEmpty() )
             {
                 changedFilePaths = changedFiles.keySet();
                 prevChangedFiles = changedFiles;
                 changedFiles = new HashMap<String, Long>();
+                changesPending = false;
+                inFlightChangedFiles = prevChangedFiles;
             }
         //TEST - more code inside synchronized block
         }
 
         if ( !forceReloadNextTime && changedFilePaths == null /*&& afterFirstSuccessfulBuild*/ )
         {
-            return false;
+            return Boolean.FALSE;
         }
 
         List<MavenProject> projectsToBuild = projects;
+        List<String> goalsToExecute = goals;
         // - !afterFirstSuccessfulBuild => first build or no previous successful builds, build all modules
         // - currentSourceMaps.isEmpty() => first build, build all modules
         // - projects.size() == 1 => one-module project, just build it
         // - else => not the first build in multimodule-project, calculate modules subset to build
+        if ( afterFirstSuccessfulBuild )
+        {
+            getProjectIndex().updateRoots(); // source roots added during previous builds
+        }
         if ( afterFirstSuccessfulBuild /* !currentSourceMaps.isEmpty() *//* currentSourceMap != null */
             && !forceReloadNextTime && projects.size() > 1 )
         {
             projectsToBuild = calculateProjectsToBuild( changedFilePaths );
         }
+        if ( afterFirstSuccessfulBuild && !forceReloadNextTime && !goalsRouting.isEmpty() )
+        {
+            goalsToExecute = calculateGoalsToExecute( changedFilePaths );
+        }
 
-        MavenExecutionResult result = executeBuild( projectsToBuild, goals );
+        // Maven build is skipped if:
+        // - this is the first build and nothing changed since previous execution
+        // - only unfiltered resources changed, they are copied directly
+        // outputs are scanned below as after a real build
+        MavenExecutionResult result = null;
+        if ( !afterFirstSuccessfulBuild && stateFile != null && isPreviousStateUpToDate() )
+        {
+            logger.info( "Sources not changed since previous run, skipping initial build" );
+            result = new DefaultMavenExecutionResult();
+        }
+        else if ( syncResources && afterFirstSuccessfulBuild && !forceReloadNextTime )
+        {
+            List<MavenProject> synchronizedProjects = getResourceSynchronizer().synchronize( changedFilePaths );
+            if ( synchronizedProjects != null )
+            {
+                projectsToBuild = synchronizedProjects;
+                result = new DefaultMavenExecutionResult();
+            }
+        }
+        boolean buildSkipped = result != null;
+        // after first successful build all changes not built yet are known, compile mojos can skip directory scanning
+        Set<String> changedFilesHint = null;
+        Set<String> handledChangedFiles = Collections.synchronizedSet( new HashSet<String>() );
+        if ( afterFirstSuccessfulBuild && !forceReloadNextTime )
+        {
+            changedFilesHint = new HashSet<String>( changedFilePaths );
+            changedFilesHint.addAll( unhandledChangedFiles );
+        }
+        if ( !buildSkipped )
+        {
+            result = executeBuild( projectsToBuild, goalsToExecute, changedFilesHint, handledChangedFiles, cancelled );
+        }
 
         boolean shouldReload = forceReloadNextTime;
         forceReloadNextTime = result.hasExceptions();
 
-        if ( !result.hasExceptions() && !additionalGoals.isEmpty() )
+        if ( !buildSkipped && !result.hasExceptions() && !additionalGoals.isEmpty() )
         {
             List<MavenProject> onlyMe = Arrays.asList( new MavenProject[] { session.getCurrentProject() } );
 
-            result = executeBuild( onlyMe, additionalGoals );
+            result = executeBuild( onlyMe, additionalGoals, changedFilesHint, handledChangedFiles, cancelled );
 
             forceReloadNextTime = result.hasExceptions();
         }
 
+        if ( result.hasExceptions() && cancelled.get() )
+        {
+            // superseded by newer changes, build everything again together with them
+            synchronized ( changedFilesLock )
+            {
+                restoreChangedFiles( prevChangedFiles );
+            }
+            forceReloadNextTime = shouldReload;
+            logger.info( "Build cancelled, files changed during the build. Restarting." );
+            return null;
+        }
+
         if ( result.hasExceptions() )
         {
             synchronized ( changedFilesLock )
             {
-                changedFiles.putAll( prevChangedFiles ); // restore previously changed paths, required for next rebuild
+                restoreChangedFiles( prevChangedFiles ); // required for next rebuild
             }
             Throwable firstException = result.getExceptions().get( 0 ); // LifecycleExecutionException
             Throwable t = firstException.getCause();
@@ -323,6 +889,15 @@ public class MavenPlay2Builder implements Play2Builder, FileWatchCallback
         }
 
         // no exceptions
+        synchronized ( changedFilesLock )
+        {
+            inFlightChangedFiles = null;
+        }
+        if ( !buildSkipped )
+        {
+            updateUnhandledChangedFiles( goalsToExecute, changedFilesHint, handledChangedFiles );
+        }
+
         if ( !afterFirstSuccessfulBuild ) // this was first successful build
         {
             afterFirstSuccessfulBuild = true;
@@ -363,56 +938,24 @@ public class MavenPlay2Builder implements Play2Builder, FileWatchCallback
             }
         }
 
-        Map<MavenProject, Map<String, File>> sourceMaps = new HashMap<MavenProject, Map<String, File>>( currentSourceMaps );
-        for ( MavenProject p: projectsToBuild )
+        synchronized ( sourceIndexesLock )
         {
-            Map<String, File> sourceMap = new HashMap<String, File>();
-            File classesDirectory = new File( p.getBuild().getOutputDirectory() );
-            String classesDirectoryPath = classesDirectory.getAbsolutePath() + File.separator;
-            File analysisCacheFile = defaultAnalysisCacheFile( p );
-            Analysis analysis = sbtAnalysisProcessor.readFromFile( analysisCacheFile );
-            for ( File sourceFile : analysis.getSourceFiles() )
-            {
-                Set<File> sourceFileProducts = analysis.getProducts( sourceFile );
-                for ( File product : sourceFileProducts )
-                {
-                    String absolutePath = product.getAbsolutePath();
-                    if ( absolutePath.contains( "$" ) )
-                    {
-                        continue; // skip inner and object classes
-                    }
-                    String relativePath = absolutePath.substring( classesDirectoryPath.length() );
-//                    String name = product.getName();
-                    String name = relativePath.substring( 0, relativePath.length() - ".class".length() );
-                    /*if (name.indexOf( '$' ) > 0)
-                    {
-                        name = name.substring( 0, name.indexOf( '$' ) );
-                    }*/
-                    name = name.replace( File.separator, "." );
-                    //System.out.println(sourceFile.getPath() + " -> " + name);
-                    sourceMap.put( name, sourceFile );
-                }
-                /*String[] definitionNames = analysis.getDefinitionNames( sourceFile );
-                Set<String> uniqueDefinitionNames = new HashSet<String>(definitionNames.length);
-                for (String definitionName: definitionNames)
-                {
-                    if ( !uniqueDefinitionNames.contains( definitionName ) )
-                    {
-                        result.put( definitionName, sourceFile );
-//                        System.out.println( "definitionName:'" + definitionName + "', source:'"
-//                                        + sourceFile.getAbsolutePath() + "'" );
-                        uniqueDefinitionNames.add( definitionName );
-                    }
-                }*/
-            }
-            sourceMaps.put( p, sourceMap );
+            outdatedSourceIndexes.addAll( projectsToBuild ); // updated when needed by findSource()
         }
-        this.currentSourceMaps = sourceMaps;
+        Play2TemplateSourcePositionMapper.clearCache(); // templates could be regenerated
 
+        boolean forcedReload = shouldReload;
+        Set<File> changedOutputDirs = new HashSet<File>( projectsToBuild.size() );
+        Set<File> modifiedOutputFiles = new HashSet<File>();
+        boolean outputFilesAddedOrRemoved = forcedReload;
+        Map<File, Map<String, File>> outputIndexes = new HashMap<File, Map<String, File>>( currentOutputIndexes );
         for ( MavenProject p: projectsToBuild )
         {
+            long previousLastModifiedTime = currentClasspathTimestamps.get( p ).longValue();
             long lastModifiedTime = 0L;
+            boolean outputModified = false;
             Set<String> outputFilePaths = new HashSet<String>();
+            Map<String, File> outputIndex = new HashMap<String, File>();
             File outputDirectory = new File( p.getBuild().getOutputDirectory() );
             if ( outputDirectory.exists() && outputDirectory.isDirectory() )
             {
@@ -425,52 +968,526 @@ public class MavenPlay2Builder implements Play2Builder, FileWatchCallback
                 {
                     File f = new File( outputDirectory, fileName );
                     outputFilePaths.add( f.getAbsolutePath() );
+                    outputIndex.put( fileName.replace( File.separatorChar, '/' ), f );
                     long lmf = f.lastModified();
                     if ( lmf > lastModifiedTime )
                     {
                         lastModifiedTime = lmf;
                     }
+                    boolean modified =
+                        outputFingerprints != null ? updateFingerprint( f, lmf ) : lmf > previousLastModifiedTime;
+                    if ( modified )
+                    {
+                        modifiedOutputFiles.add( f );
+                        outputModified = true;
+                    }
                 }
             }
-            if ( !shouldReload
-                && ( lastModifiedTime > currentClasspathTimestamps.get( p ).longValue() || !outputFilePaths.equals( currentClasspathFilePaths.get( p ) ) ) )
+            boolean filesAddedOrRemoved = !outputFilePaths.equals( currentClasspathFilePaths.get( p ) );
+            if ( filesAddedOrRemoved && outputFingerprints != null )
+            {
+                for ( String removedFilePath: currentClasspathFilePaths.get( p ) )
+                {
+                    if ( !outputFilePaths.contains( removedFilePath ) )
+                    {
+                        outputFingerprints.remove( removedFilePath );
+                    }
+                }
+            }
+            if ( outputModified || filesAddedOrRemoved )
             {
                 shouldReload = true;
+                changedOutputDirs.add( outputDirectory );
             }
+            outputFilesAddedOrRemoved = outputFilesAddedOrRemoved || filesAddedOrRemoved;
             currentClasspathTimestamps.put( p, Long.valueOf( lastModifiedTime ) );
             currentClasspathFilePaths.put( p, outputFilePaths );
+            outputIndexes.put( outputDirectory, outputIndex );
+        }
+        this.currentOutputIndexes = outputIndexes;
+
+        synchronized ( changedOutputDirectories )
+        {
+            if ( forcedReload )
+            {
+                for ( MavenProject p: projects )
+                {
+                    changedOutputDirectories.add( new File( p.getBuild().getOutputDirectory() ) );
+                }
+            }
+            changedOutputDirectories.addAll( changedOutputDirs );
+        }
+        synchronized ( changedOutputFilesLock )
+        {
+            if ( outputFilesAddedOrRemoved )
+            {
+                changedOutputFiles = null;
+            }
+            else if ( changedOutputFiles != null )
+            {
+                changedOutputFiles.addAll( modifiedOutputFiles );
+            }
+        }
+
+        return Boolean.valueOf( shouldReload );
+    }
+
+    /**
+     * Updates output file fingerprint if its modification time changed.
+     *
+     * @return true if file contents changed (or it's a new file or it cannot be read)
+     */
+    private boolean updateFingerprint( File file, long lastModified )
+    {
+        String path = file.getAbsolutePath();
+        long[] previous = outputFingerprints.get( path );
+        if ( previous != null && previous[0] == lastModified )
+        {
+            return false;
+        }
+        long checksum;
+        try
+        {
+            checksum = checksum( file );
+        }
+        catch ( IOException e )
+        {
+            outputFingerprints.remove( path );
+            return true;
+        }
+        long[] current = new long[] { lastModified, file.length(), checksum };
+        outputFingerprints.put( path, current );
+        return previous == null || previous[1] != current[1] || previous[2] != current[2];
+    }
+
+    private static long checksum( File file )
+        throws IOException
+    {
+        CRC32 crc = new CRC32();
+        InputStream is = new FileInputStream( file );
+        try
+        {
+            byte[] buffer = new byte[8192];
+            int n;
+            while ( ( n = is.read( buffer ) ) != -1 )
+            {
+                crc.update( buffer, 0, n );
+            }
+        }
+        finally
+        {
+            is.close();
         }
+        return crc.getValue();
+    }
 
-        return shouldReload;
+    /**
+     * Queues background build, unless one is already queued and not started yet
+     * (it will build all changes detected before it starts).
+     */
+    private void scheduleBackgroundBuild()
+    {
+        synchronized ( backgroundBuildLock )
+        {
+            if ( !backgroundBuildQueued )
+            {
+                if ( backgroundBuildExecutor == null )
+                {
+                    backgroundBuildExecutor = Executors.newSingleThreadExecutor( new ThreadFactory()
+                    {
+                        @Override
+                        public Thread newThread( Runnable r )
+                        {
+                            Thread thread = new Thread( r, "play2-background-build" );
+                            thread.setDaemon( true );
+                            return thread;
+                        }
+                    } );
+                }
+                backgroundBuildQueued = true;
+                backgroundBuildPending = true;
+                lastBackgroundBuild = backgroundBuildExecutor.submit( new BackgroundBuild() );
+            }
+        }
     }
 
-    private MavenExecutionResult executeBuild( List<MavenProject> projectsToBuild, List<String> goalsToExecute )
+    /**
+     * Waits for queued and running background builds to finish and returns their aggregated result.
+     */
+    private boolean awaitBackgroundBuilds() throws Play2BuildFailure, Play2BuildError
+    {
+        Future<?> lastBuild;
+        synchronized ( backgroundBuildLock )
+        {
+            lastBuild = lastBackgroundBuild;
+            lastBackgroundBuild = null;
+            backgroundBuildPending = false; // result is consumed below
+        }
+        if ( lastBuild != null )
+        {
+            try
+            {
+                lastBuild.get(); // single-threaded executor, all previously submitted builds are finished too
+            }
+            catch ( InterruptedException e )
+            {
+                throw new RuntimeException ( e );
+            }
+            catch ( ExecutionException e )
+            {
+                throw new Play2BuildError( e.getCause() ); // should not happen, BackgroundBuild catches all exceptions
+            }
+        }
+
+        boolean reload;
+        Exception failure;
+        synchronized ( backgroundBuildLock )
+        {
+            reload = backgroundBuildReload;
+            failure = backgroundBuildFailure;
+            backgroundBuildReload = false;
+            backgroundBuildFailure = null;
+        }
+        if ( failure instanceof Play2BuildFailure )
+        {
+            throw (Play2BuildFailure) failure;
+        }
+        if ( failure instanceof Play2BuildError )
+        {
+            throw (Play2BuildError) failure;
+        }
+        return reload;
+    }
+
+    /**
+     * Builds changes as soon as they are detected, result is consumed by next {@link #build()} call.
+     */
+    private class BackgroundBuild
+        implements Runnable
+    {
+        @Override
+        public void run()
+        {
+            synchronized ( backgroundBuildLock )
+            {
+                backgroundBuildQueued = false;
+            }
+            try
+            {
+                boolean reload = internalBuild();
+                synchronized ( backgroundBuildLock )
+                {
+                    backgroundBuildReload = backgroundBuildReload || reload;
+                    backgroundBuildFailure = null;
+                }
+            }
+            catch ( Play2BuildFailure e )
+            {
+                setBackgroundBuildFailure( e );
+            }
+            catch ( Play2BuildError e )
+            {
+                setBackgroundBuildFailure( e );
+            }
+            catch ( RuntimeException e )
+            {
+                String message = e.getClass().getSimpleName() + ": " + e.getMessage();
+                setBackgroundBuildFailure( new Play2BuildError( message, e ) );
+            }
+        }
+
+        private void setBackgroundBuildFailure( Exception e )
+        {
+            synchronized ( backgroundBuildLock )
+            {
+                backgroundBuildFailure = e;
+            }
+        }
+    }
+
+    /**
+     * Waits until no file changes have been reported for {@code changeDebounceMillis} milliseconds,
+     * so changes arriving in bursts (VCS operations, IDE "save all") are built together.
+     */
+    private void waitForQuietPeriod()
+    {
+        if ( changeDebounceMillis <= 0L )
+        {
+            return;
+        }
+
+        while ( true )
+        {
+            long remainingMillis;
+            synchronized ( changedFilesLock )
+            {
+                if ( changedFiles.isEmpty() )
+                {
+                    return;
+                }
+                remainingMillis = lastChangeTime + changeDebounceMillis - System.currentTimeMillis();
+            }
+            if ( remainingMillis <= 0L )
+            {
+                return;
+            }
+            try
+            {
+                Thread.sleep( remainingMillis );
+            }
+            catch ( InterruptedException e )
+            {
+                throw new RuntimeException ( e );
+            }
+        }
+    }
+
+    /**
+     * Remembers hinted files not selected by any mojo after successful build with goals selected by routing.
+     * All mojos configured in the POM are executed with {@code runGoals}, so then all hinted files are handled.
+     */
+    private void updateUnhandledChangedFiles( List<String> goalsToExecute, Set<String> changedFilesHint,
+                                              Set<String> handledChangedFiles )
+    {
+        if ( changedFilesHint == null || goalsToExecute.equals( goals ) )
+        {
+            unhandledChangedFiles.clear();
+            return;
+        }
+        unhandledChangedFiles.addAll( changedFilesHint );
+        for ( Iterator<String> iter = unhandledChangedFiles.iterator(); iter.hasNext(); )
+        {
+            String path = iter.next();
+            if ( handledChangedFiles.contains( path ) || !new File( path ).isFile() )
+            {
+                iter.remove();
+            }
+        }
+        if ( !unhandledChangedFiles.isEmpty() )
+        {
+            logger.debug( "Changed files not handled by routed goals " + goalsToExecute + ": "
+                + unhandledChangedFiles );
+        }
+    }
+
+    /**
+     * Executes goals with changed files published in projects' context (see {@link AbstractPlay2Mojo}).
+     */
+    private MavenExecutionResult executeBuild( List<MavenProject> projectsToBuild, List<String> goalsToExecute,
+                                               Set<String> changedFilesHint, Set<String> handledChangedFiles,
+                                               AtomicBoolean cancelled )
+    {
+        if ( changedFilesHint == null )
+        {
+            return executeBuild( projectsToBuild, goalsToExecute, cancelled );
+        }
+        Set<String> hint = Collections.unmodifiableSet( new HashSet<String>( changedFilesHint ) );
+        for ( MavenProject p: projectsToBuild )
+        {
+            p.setContextValue( AbstractPlay2Mojo.CHANGED_FILES_CONTEXT_KEY, hint );
+            p.setContextValue( AbstractPlay2Mojo.HANDLED_CHANGED_FILES_CONTEXT_KEY, handledChangedFiles );
+        }
+        try
+        {
+            return executeBuild( projectsToBuild, goalsToExecute, cancelled );
+        }
+        finally
+        {
+            for ( MavenProject p: projectsToBuild )
+            {
+                p.setContextValue( AbstractPlay2Mojo.CHANGED_FILES_CONTEXT_KEY, null );
+                p.setContextValue( AbstractPlay2Mojo.HANDLED_CHANGED_FILES_CONTEXT_KEY, null );
+            }
+        }
+    }
+
+    private MavenExecutionResult executeBuild( List<MavenProject> projectsToBuild, List<String> goalsToExecute,
+                                               AtomicBoolean cancelled )
+    {
+        if ( runThreads > 1 && projectsToBuild.size() > 1 )
+        {
+            return executeParallelBuild( projectsToBuild, goalsToExecute, cancelled );
+        }
+
+        long startTime = System.currentTimeMillis();
+        MavenExecutionResult result = new DefaultMavenExecutionResult();
+        MavenSession newSession = createBuildSession( projectsToBuild, goalsToExecute, result, cancelled );
+
+        // After cancellation the build stops at the next project or mojo boundary (see
+        // MavenPlay2BuilderExecutionListener), so the future completes shortly after it.
+        Future<MavenExecutionResult> mavenBuild =
+            getBuildExecutor().submit( Executors.callable( new MavenPlay2BuilderRunnable( lifecycleExecutor,
+                                                                                          newSession ), result ) );
+        try
+        {
+            return mavenBuild.get();
+        }
+        catch ( InterruptedException e )
+        {
+            throw new RuntimeException ( e );
+        }
+        catch ( ExecutionException e )
+        {
+            result.addException( e.getCause() );
+            return result;
+        }
+        finally
+        {
+            logBuildOverhead( startTime, newSession );
+        }
+    }
+
+    private void logBuildOverhead( long startTime, MavenSession buildSession )
+    {
+        if ( logger.isDebugEnabled() )
+        {
+            MavenPlay2BuilderExecutionListener listener =
+                (MavenPlay2BuilderExecutionListener) buildSession.getRequest().getExecutionListener();
+            long firstMojoStartTime = listener.getFirstMojoStartTime();
+            if ( firstMojoStartTime > 0L )
+            {
+                logger.debug( "Time before first mojo execution (" + buildSession.getProjects() + "): "
+                    + ( firstMojoStartTime - startTime ) + " ms" );
+            }
+        }
+    }
+
+    /**
+     * Builds projects level by level. Projects on the same level of the reactor dependency graph
+     * do not depend on each other, so they are built concurrently, one Maven execution per project.
+     * The build stops after the first level with failures.
+     */
+    private MavenExecutionResult executeParallelBuild( List<MavenProject> projectsToBuild, List<String> goalsToExecute,
+                                                       AtomicBoolean cancelled )
+    {
+        MavenExecutionResult result = new DefaultMavenExecutionResult();
+        for ( List<MavenProject> level: calculateBuildLevels( projectsToBuild ) )
+        {
+            logger.debug( "Building concurrently: " + level );
+            long levelStartTime = System.currentTimeMillis();
+            List<Future<MavenExecutionResult>> levelResults = new ArrayList<Future<MavenExecutionResult>>( level.size() );
+            List<MavenSession> levelSessions = new ArrayList<MavenSession>( level.size() );
+            for ( MavenProject p: level )
+            {
+                MavenExecutionResult projectResult = new DefaultMavenExecutionResult();
+                MavenSession newSession =
+                    createBuildSession( Collections.singletonList( p ), goalsToExecute, projectResult, cancelled );
+                newSession.setParallel( true );
+                MavenPlay2BuilderRunnable runnable = new MavenPlay2BuilderRunnable( lifecycleExecutor, newSession );
+                levelResults.add( getParallelBuildExecutor().submit( Executors.callable( runnable, projectResult ) ) );
+                levelSessions.add( newSession );
+            }
+            for ( Future<MavenExecutionResult> levelResult: levelResults )
+            {
+                try
+                {
+                    for ( Throwable t: levelResult.get().getExceptions() )
+                    {
+                        result.addException( t );
+                    }
+                }
+                catch ( InterruptedException e )
+                {
+                    throw new RuntimeException ( e );
+                }
+                catch ( ExecutionException e )
+                {
+                    result.addException( e.getCause() );
+                }
+            }
+            for ( MavenSession levelSession: levelSessions )
+            {
+                logBuildOverhead( levelStartTime, levelSession );
+            }
+            if ( result.hasExceptions() )
+            {
+                break;
+            }
+        }
+        return result;
+    }
+
+    private List<List<MavenProject>> calculateBuildLevels( List<MavenProject> projectsToBuild )
+    {
+        ProjectDependencyGraph projectDependencyGraph = session.getProjectDependencyGraph();
+        Map<MavenProject, Integer> projectLevels = new HashMap<MavenProject, Integer>( projectsToBuild.size() );
+        List<List<MavenProject>> result = new ArrayList<List<MavenProject>>();
+        for ( MavenProject p: projectsToBuild ) // in reactor order, upstream projects first
+        {
+            int level = 0;
+            for ( MavenProject upstreamProject: projectDependencyGraph.getUpstreamProjects( p, true ) )
+            {
+                Integer upstreamLevel = projectLevels.get( upstreamProject );
+                if ( upstreamLevel != null && upstreamLevel.intValue() >= level )
+                {
+                    level = upstreamLevel.intValue() + 1;
+                }
+            }
+            projectLevels.put( p, Integer.valueOf( level ) );
+            if ( level == result.size() )
+            {
+                result.add( new ArrayList<MavenProject>() );
+            }
+            result.get( level ).add( p );
+        }
+        return result;
+    }
+
+    private MavenSession createBuildSession( List<MavenProject> projectsToBuild, List<String> goalsToExecute,
+                                             MavenExecutionResult result, AtomicBoolean cancelled )
     {
         MavenExecutionRequest request = DefaultMavenExecutionRequest.copy( session.getRequest() );
         request.setStartTime( new Date() );
-        request.setExecutionListener( new ExecutionEventLogger() );
+        request.setExecutionListener( new MavenPlay2BuilderExecutionListener( cancelled ) );
         request.setGoals( goalsToExecute );
 
-        MavenExecutionResult result = new DefaultMavenExecutionResult();
-
-        final MavenSession newSession = new MavenSession( container, session.getRepositorySession(), request, result );
+        MavenSession newSession = new MavenSession( container, session.getRepositorySession(), request, result );
         newSession.setProjects( projectsToBuild );
         newSession.setCurrentProject( session.getCurrentProject() );
         newSession.setParallel( session.isParallel() );
         newSession.setProjectDependencyGraph( session.getProjectDependencyGraph() );
+        return newSession;
+    }
 
-        Thread mavenBuildThread = new Thread( new MavenPlay2BuilderRunnable( lifecycleExecutor, newSession ) );
-        mavenBuildThread.start();
-        try
+    /**
+     * Returns long-lived thread executing builds one by one, so every build does not start a new thread.
+     */
+    private synchronized ExecutorService getBuildExecutor()
+    {
+        if ( buildExecutor == null )
         {
-            mavenBuildThread.join();
+            buildExecutor = Executors.newSingleThreadExecutor( new ThreadFactory()
+            {
+                @Override
+                public Thread newThread( Runnable r )
+                {
+                    Thread thread = new Thread( r, "play2-build" );
+                    thread.setDaemon( true );
+                    return thread;
+                }
+            } );
         }
-        catch ( InterruptedException e )
+        return buildExecutor;
+    }
+
+    private synchronized ExecutorService getParallelBuildExecutor()
+    {
+        if ( parallelBuildExecutor == null )
         {
-            throw new RuntimeException ( e );
-        }
+            parallelBuildExecutor = Executors.newFixedThreadPool( runThreads, new ThreadFactory()
+            {
+                private AtomicInteger threadNumber = new AtomicInteger();
 
-        return result;
+                @Override
+                public Thread newThread( Runnable r )
+                {
+                    Thread thread = new Thread( r, "play2-parallel-build-" + threadNumber.incrementAndGet() );
+                    thread.setDaemon( true );
+                    return thread;
+                }
+            } );
+        }
+        return parallelBuildExecutor;
     }
 
     private Play2BuildException getPlayBuildException( Throwable playException )
@@ -569,33 +1586,56 @@ public class MavenPlay2Builder implements Play2Builder, FileWatchCallback
 
     private List<MavenProject> calculateProjectsToBuild( Set<String> changedFilePaths )
     {
-        Set<MavenProject> changedProjects = new HashSet<MavenProject>( projects.size() );
+        return getProjectIndex().getProjectsToBuild( changedFilePaths );
+    }
+
+    private List<String> calculateGoalsToExecute( Set<String> changedFilePaths )
+    {
+        Set<String> selectedPatterns = new HashSet<String>( goalsRouting.size() );
         for ( String path: changedFilePaths )
         {
-            MavenProject p = findProjectFor( path );
-            changedProjects.add( p );
+            String pattern = findGoalsRoutingPatternFor( path );
+            if ( pattern == null )
+            {
+                logger.debug( "No goals routing for \"" + path + "\" file, executing " + goals );
+                return goals;
+            }
+            selectedPatterns.add( pattern );
         }
 
-        Set<MavenProject> changedAndDependentProjects = new HashSet<MavenProject>( projects.size() );
-        for ( MavenProject p: changedProjects )
+        List<String> result = new ArrayList<String>();
+        for ( Map.Entry<String, List<String>> entry: goalsRouting.entrySet() ) // keep routing order
         {
-            changedAndDependentProjects.add( p );
-            List<MavenProject> deps = session.getProjectDependencyGraph().getDownstreamProjects( p, true/*transitive*/ );
-            for ( MavenProject depP: deps )
+            if ( selectedPatterns.contains( entry.getKey() ) )
             {
-                if ( projects.contains( depP ) )
+                for ( String goal: entry.getValue() )
                 {
-                    changedAndDependentProjects.addAll( deps );
+                    if ( !result.contains( goal ) )
+                    {
+                        result.add( goal );
+                    }
                 }
             }
         }
+        logger.debug( "Goals selected by routing: " + result );
+        return result;
+    }
 
-        List<MavenProject> result = new ArrayList<MavenProject>( changedAndDependentProjects.size() );
-        for ( MavenProject p: projects )
+    private String findGoalsRoutingPatternFor( String filePath )
+    {
+        String result = null;
+        MavenProject p = findProjectFor( filePath );
+        String baseDirPath = p != null ? p.getBasedir().getAbsolutePath() + File.separator : null;
+        if ( baseDirPath != null && filePath.startsWith( baseDirPath ) )
         {
-            if ( changedAndDependentProjects.contains( p ) )
+            String relativePath = filePath.substring( baseDirPath.length() );
+            for ( String pattern: goalsRouting.keySet() )
             {
-                result.add( p );
+                if ( SelectorUtils.matchPath( pattern.replace( '/', File.separatorChar ), relativePath ) )
+                {
+                    result = pattern;
+                    break;
+                }
             }
         }
         return result;
@@ -603,28 +1643,25 @@ public class MavenPlay2Builder implements Play2Builder, FileWatchCallback
 
     private MavenProject findProjectFor( String filePath )
     {
-        MavenProject result = null;
-        search:
-        for ( MavenProject p: projects )
+        return getProjectIndex().findProjectFor( filePath );
+    }
+
+    private synchronized MavenPlay2ProjectIndex getProjectIndex()
+    {
+        if ( projectIndex == null )
         {
-            for ( String sourceRoot: p.getCompileSourceRoots() )
-            {
-                if ( filePath.startsWith( sourceRoot ) )
-                {
-                    result = p;
-                    break search;
-                }
-            }
-            for ( Resource resource: p.getResources() )
-            {
-                if ( filePath.startsWith( resource.getDirectory() ) )
-                {
-                    result = p;
-                    break search;
-                }
-            }
+            projectIndex = new MavenPlay2ProjectIndex( projects, session.getProjectDependencyGraph() );
         }
-        return result;
+        return projectIndex;
+    }
+
+    private MavenPlay2ResourceSynchronizer getResourceSynchronizer()
+    {
+        if ( resourceSynchronizer == null )
+        {
+            resourceSynchronizer = new MavenPlay2ResourceSynchronizer( getProjectIndex(), logger );
+        }
+        return resourceSynchronizer;
     }
 
 }
@@ -0,0 +1,94 @@
+/*
+ * Copyright 2013-2020 Grzegorz Slowikowski (gslowikowski at gmail dot com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.google.code.play2.plugin;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.apache.maven.cli.event.ExecutionEventLogger;
+import org.apache.maven.execution.ExecutionEvent;
+
+/**
+ * Execution listener logging dev-mode rebuild progress and stopping the rebuild
+ * at the next project or mojo boundary after it was cancelled.
+ * 
+ * @author <a href="mailto:gslowikowski@gmail.com">Grzegorz Slowikowski</a>
+ */
+public class MavenPlay2BuilderExecutionListener
+    extends ExecutionEventLogger
+{
+    private AtomicBoolean cancelled;
+
+    private volatile long firstMojoStartTime = 0L;
+
+    public MavenPlay2BuilderExecutionListener( AtomicBoolean cancelled )
+    {
+        super();
+        this.cancelled = cancelled;
+    }
+
+    @Override
+    public void projectStarted( ExecutionEvent event )
+    {
+        checkCancelled();
+        super.projectStarted( event );
+    }
+
+    /**
+     * Returns start time of the first mojo execution, used to measure build setup overhead.
+     *
+     * @return time in milliseconds or 0 if no mojo was executed yet
+     */
+    public long getFirstMojoStartTime()
+    {
+        return firstMojoStartTime;
+    }
+
+    @Override
+    public void mojoStarted( ExecutionEvent event )
+    {
+        if ( firstMojoStartTime == 0L )
+        {
+            firstMojoStartTime = System.currentTimeMillis();
+        }
+        checkCancelled();
+        super.mojoStarted( event );
+    }
+
+    private void checkCancelled()
+    {
+        if ( cancelled.get() )
+        {
+            throw new BuildCancelledException();
+        }
+    }
+
+    /**
+     * Thrown from listener methods to stop cancelled build, Maven records it as a project build failure.
+     */
+    public static class BuildCancelledException
+        extends RuntimeException
+    {
+        private static final long serialVersionUID = 1L;
+
+        public BuildCancelledException()
+        {
+            super( "Build cancelled" );
+        }
+    }
+
+}
@@ -0,0 +1,255 @@
+/*
+ * Copyright 2013-2020 Grzegorz Slowikowski (gslowikowski at gmail dot com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.google.code.play2.plugin;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Properties;
+import java.util.zip.CRC32;
+
+import org.apache.maven.artifact.Artifact;
+import org.apache.maven.model.Resource;
+import org.apache.maven.project.MavenProject;
+
+import org.codehaus.plexus.util.DirectoryScanner;
+
+/**
+ * Fingerprints of sources and outputs of all modules, written when the builder is closed
+ * and compared on the next start to skip the initial build if nothing changed in the meantime.
+ * <br>
+ * <br>
+ * Every fingerprint is a number of files in a directory and a checksum of their relative paths,
+ * lengths and modification times. Directories are stored together with their fingerprints, so source roots
+ * added by mojos during builds are checked too. Module pom files, their parent pom files (also from outside
+ * of the reactor) and dependency artifact files are fingerprinted by their lengths and modification times.
+ */
+public class MavenPlay2BuilderState
+{
+    private static final String GOALS_KEY = "goals";
+
+    private static final String POM_PREFIX = "pom:";
+
+    private static final String ARTIFACT_PREFIX = "artifact:";
+
+    private static final String SOURCES_PREFIX = "sources:";
+
+    private static final String OUTPUT_PREFIX = "output:";
+
+    private static final String MISSING = "missing";
+
+    private Properties properties;
+
+    private MavenPlay2BuilderState( Properties properties )
+    {
+        this.properties = properties;
+    }
+
+    /**
+     * Calculates current state of modules.
+     *
+     * @param projects all modules
+     * @param goals executed goals
+     * @return current state
+     */
+    public static MavenPlay2BuilderState calculate( List<MavenProject> projects, List<String> goals )
+    {
+        Properties properties = new Properties();
+        properties.setProperty( GOALS_KEY, goals.toString() );
+        for ( MavenProject p: projects )
+        {
+            for ( MavenProject pomProject = p; pomProject != null; pomProject = pomProject.getParent() )
+            {
+                File pomFile = pomProject.getFile();
+                if ( pomFile != null )
+                {
+                    properties.setProperty( POM_PREFIX + pomFile.getAbsolutePath(), fileFingerprint( pomFile ) );
+                }
+            }
+            for ( Artifact artifact: p.getArtifacts() )
+            {
+                File artifactFile = artifact.getFile();
+                if ( artifactFile != null && !artifactFile.isDirectory() ) // reactor modules outputs checked below
+                {
+                    properties.setProperty( ARTIFACT_PREFIX + artifactFile.getAbsolutePath(),
+                                            fileFingerprint( artifactFile ) );
+                }
+            }
+            String targetDirectory = p.getBuild().getDirectory();
+            for ( String sourceRoot: p.getCompileSourceRoots() )
+            {
+                if ( !sourceRoot.startsWith( targetDirectory ) ) // generated sources are checked with outputs
+                {
+                    properties.setProperty( SOURCES_PREFIX + sourceRoot,
+                                            directoryFingerprint( new File( sourceRoot ) ) );
+                }
+            }
+            for ( Resource resource: p.getResources() )
+            {
+                String resourceRoot = resource.getDirectory();
+                if ( resourceRoot != null && !resourceRoot.startsWith( targetDirectory ) )
+                {
+                    properties.setProperty( SOURCES_PREFIX + resourceRoot,
+                                            directoryFingerprint( new File( resourceRoot ) ) );
+                }
+            }
+            String outputDirectory = p.getBuild().getOutputDirectory();
+            properties.setProperty( OUTPUT_PREFIX + outputDirectory,
+                                    directoryFingerprint( new File( outputDirectory ) ) );
+        }
+        return new MavenPlay2BuilderState( properties );
+    }
+
+    /**
+     * Reads state written by previous {@code play2:run} execution.
+     *
+     * @param file state file
+     * @return previous state or null if the file does not exist or cannot be read
+     */
+    public static MavenPlay2BuilderState readFromFile( File file )
+    {
+        if ( !file.isFile() )
+        {
+            return null;
+        }
+        Properties properties = new Properties();
+        try
+        {
+            InputStream is = new FileInputStream( file );
+            try
+            {
+                properties.load( is );
+            }
+            finally
+            {
+                is.close();
+            }
+        }
+        catch ( IOException e )
+        {
+            return null;
+        }
+        catch ( IllegalArgumentException e ) // malformed file
+        {
+            return null;
+        }
+        return new MavenPlay2BuilderState( properties );
+    }
+
+    /**
+     * Writes the state.
+     *
+     * @param file state file
+     * @throws IOException I/O exception
+     */
+    public void writeToFile( File file )
+        throws IOException
+    {
+        File parentDirectory = file.getParentFile();
+        if ( parentDirectory != null && !parentDirectory.isDirectory() && !parentDirectory.mkdirs() )
+        {
+            throw new IOException( "Cannot create \"" + parentDirectory.getAbsolutePath() + "\" directory" );
+        }
+        OutputStream os = new FileOutputStream( file );
+        try
+        {
+            properties.store( os, "play2-maven-plugin build state" );
+        }
+        finally
+        {
+            os.close();
+        }
+    }
+
+    /**
+     * Checks whether directories and files of the previous state are unchanged
+     * and current modules do not have new source roots.
+     *
+     * @param current current state
+     * @return true if nothing changed since this state was written
+     */
+    public boolean isUpToDate( MavenPlay2BuilderState current )
+    {
+        for ( Object key: current.properties.keySet() )
+        {
+            if ( !properties.containsKey( key ) )
+            {
+                return false; // new module or source root
+            }
+        }
+        for ( String key: properties.stringPropertyNames() )
+        {
+            String expected = properties.getProperty( key );
+            String actual = current.properties.getProperty( key );
+            if ( actual == null && key.startsWith( SOURCES_PREFIX ) )
+            {
+                // source root added by a mojo during previous build
+                actual = directoryFingerprint( new File( key.substring( SOURCES_PREFIX.length() ) ) );
+            }
+            if ( !expected.equals( actual ) )
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static String fileFingerprint( File file )
+    {
+        return file.isFile() ? file.length() + ":" + file.lastModified() : MISSING;
+    }
+
+    private static String directoryFingerprint( File directory )
+    {
+        if ( !directory.isDirectory() )
+        {
+            return MISSING;
+        }
+        DirectoryScanner scanner = new DirectoryScanner();
+        scanner.setBasedir( directory );
+        scanner.scan();
+        String[] files = scanner.getIncludedFiles();
+        Arrays.sort( files ); // scanning order is file system dependent
+        CRC32 crc = new CRC32();
+        for ( String fileName: files )
+        {
+            File f = new File( directory, fileName );
+            update( crc, fileName.replace( File.separatorChar, '/' ) + ":" + f.length() + ":" + f.lastModified() );
+        }
+        return files.length + ":" + Long.toHexString( crc.getValue() );
+    }
+
+    private static void update( CRC32 crc, String value )
+    {
+        try
+        {
+            crc.update( value.getBytes( "UTF-8" ) );
+        }
+        catch ( UnsupportedEncodingException e )
+        {
+            throw new RuntimeException( e ); // UTF-8 is always supported
+        }
+    }
+
+}
@@ -0,0 +1,264 @@
+/*
+ * Copyright 2013-2020 Grzegorz Slowikowski (gslowikowski at gmail dot com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.google.code.play2.plugin;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.maven.execution.ProjectDependencyGraph;
+import org.apache.maven.model.Resource;
+import org.apache.maven.project.MavenProject;
+
+/**
+ * Finds modules containing changed files and modules depending on them.
+ * <br>
+ * <br>
+ * Source and resource roots are kept in a path segments tree, transitive downstream modules
+ * of every module are precomputed, so resolving changed files takes time linear in their number.
+ * Source roots can be added by mojos during builds, {@link #updateRoots()} has to be called
+ * once per build cycle to update the tree.
+ */
+public class MavenPlay2ProjectIndex
+{
+    private List<MavenProject> projects;
+
+    private BitSet[] downstreamProjects; // indexes (in projects list) of transitive downstream modules
+
+    private volatile PathNode roots = null; // replaced by updateRoots()
+
+    // modules with their source roots and resources used to create the roots tree
+    private List<Object> rootsState = null;
+
+    public MavenPlay2ProjectIndex( List<MavenProject> projects, ProjectDependencyGraph dependencyGraph )
+    {
+        this.projects = projects;
+        Map<MavenProject, Integer> projectIndexes = new HashMap<MavenProject, Integer>( projects.size() );
+        for ( int i = 0; i < projects.size(); i++ )
+        {
+            projectIndexes.put( projects.get( i ), Integer.valueOf( i ) );
+        }
+        downstreamProjects = new BitSet[projects.size()];
+        for ( int i = 0; i < projects.size(); i++ )
+        {
+            downstreamProjects[i] = new BitSet( projects.size() );
+            for ( MavenProject downstreamProject: dependencyGraph.getDownstreamProjects( projects.get( i ),
+                                                                                       true/*transitive*/ ) )
+            {
+                Integer downstreamIndex = projectIndexes.get( downstreamProject );
+                if ( downstreamIndex != null )
+                {
+                    downstreamProjects[i].set( downstreamIndex.intValue() );
+                }
+            }
+        }
+        updateRoots();
+    }
+
+    /**
+     * Recreates source and resource roots tree if roots of any module changed since the previous call.
+     */
+    public void updateRoots()
+    {
+        List<Object> currentRootsState = new ArrayList<Object>();
+        for ( MavenProject p: projects )
+        {
+            currentRootsState.add( p );
+            currentRootsState.addAll( p.getCompileSourceRoots() );
+            currentRootsState.addAll( p.getResources() ); // compared by identity
+        }
+        if ( currentRootsState.equals( rootsState ) )
+        {
+            return;
+        }
+
+        PathNode newRoots = new PathNode();
+        int order = 0;
+        for ( int i = 0; i < projects.size(); i++ )
+        {
+            MavenProject p = projects.get( i );
+            for ( String sourceRoot: p.getCompileSourceRoots() )
+            {
+                newRoots.add( sourceRoot, new Root( p, i, null, order++ ) );
+            }
+            for ( Resource resource: p.getResources() )
+            {
+                newRoots.add( resource.getDirectory(), new Root( p, i, resource, order++ ) );
+            }
+        }
+        roots = newRoots;
+        rootsState = currentRootsState;
+    }
+
+    /**
+     * Returns module containing the file (in its source or resource roots).
+     *
+     * @param filePath absolute file path
+     * @return first module (in reactor order) containing the file, or null if not found
+     */
+    public MavenProject findProjectFor( String filePath )
+    {
+        int i = findProjectIndexFor( filePath );
+        return i >= 0 ? projects.get( i ) : null;
+    }
+
+    /**
+     * Returns source and resource roots containing the file.
+     *
+     * @param filePath absolute file path
+     * @return roots in reactor order of their modules, module source roots before its resource roots
+     */
+    public List<Root> findRootsFor( String filePath )
+    {
+        List<Root> result = new ArrayList<Root>( 2 );
+        PathNode node = roots;
+        int start = 0;
+        while ( node != null && start <= filePath.length() )
+        {
+            int end = filePath.indexOf( File.separatorChar, start );
+            if ( end < 0 )
+            {
+                end = filePath.length();
+            }
+            node = node.children.get( filePath.substring( start, end ) );
+            if ( node != null && node.roots != null )
+            {
+                result.addAll( node.roots );
+            }
+            start = end + 1;
+        }
+        Collections.sort( result );
+        return result;
+    }
+
+    /**
+     * Returns modules containing changed files and their downstream modules.
+     *
+     * @param changedFilePaths absolute changed file paths
+     * @return modules to build in reactor order
+     */
+    public List<MavenProject> getProjectsToBuild( Set<String> changedFilePaths )
+    {
+        BitSet selectedProjects = new BitSet( projects.size() );
+        BitSet changedProjects = new BitSet( projects.size() );
+        for ( String path: changedFilePaths )
+        {
+            int i = findProjectIndexFor( path );
+            if ( i >= 0 && !changedProjects.get( i ) )
+            {
+                changedProjects.set( i );
+                selectedProjects.set( i );
+                selectedProjects.or( downstreamProjects[i] );
+            }
+        }
+
+        List<MavenProject> result = new ArrayList<MavenProject>( selectedProjects.cardinality() );
+        for ( int i = selectedProjects.nextSetBit( 0 ); i >= 0; i = selectedProjects.nextSetBit( i + 1 ) )
+        {
+            result.add( projects.get( i ) );
+        }
+        return result;
+    }
+
+    private int findProjectIndexFor( String filePath )
+    {
+        List<Root> fileRoots = findRootsFor( filePath );
+        return !fileRoots.isEmpty() ? fileRoots.get( 0 ).projectIndex : -1;
+    }
+
+    /**
+     * Module source or resource root.
+     */
+    public static class Root
+        implements Comparable<Root>
+    {
+        private MavenProject project;
+
+        private int projectIndex;
+
+        private Resource resource;
+
+        private int order; // modules order, then roots order in a module
+
+        Root( MavenProject project, int projectIndex, Resource resource, int order )
+        {
+            this.project = project;
+            this.projectIndex = projectIndex;
+            this.resource = resource;
+            this.order = order;
+        }
+
+        public MavenProject getProject()
+        {
+            return project;
+        }
+
+        /**
+         * Returns module resource.
+         *
+         * @return resource or null if this is a source root
+         */
+        public Resource getResource()
+        {
+            return resource;
+        }
+
+        @Override
+        public int compareTo( Root other )
+        {
+            return order < other.order ? -1 : ( order == other.order ? 0 : 1 );
+        }
+    }
+
+    private static class PathNode
+    {
+        Map<String, PathNode> children = new HashMap<String, PathNode>( 4 );
+
+        List<Root> roots = null; // roots having this directory, null if none
+
+        void add( String path, Root root )
+        {
+            if ( path == null )
+            {
+                return;
+            }
+            PathNode node = this;
+            for ( String segment: path.split( File.separatorChar == '\\' ? "\\\\" : File.separator ) )
+            {
+                PathNode child = node.children.get( segment );
+                if ( child == null )
+                {
+                    child = new PathNode();
+                    node.children.put( segment, child );
+                }
+                node = child;
+            }
+            if ( node.roots == null )
+            {
+                node.roots = new ArrayList<Root>( 1 );
+            }
+            node.roots.add( root );
+        }
+    }
+
+}
@@ -0,0 +1,218 @@
+/*
+ * Copyright 2013-2020 Grzegorz Slowikowski (gslowikowski at gmail dot com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.google.code.play2.plugin;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.maven.model.Resource;
+import org.apache.maven.plugin.logging.Log;
+import org.apache.maven.project.MavenProject;
+
+import org.codehaus.plexus.util.AbstractScanner;
+import org.codehaus.plexus.util.FileUtils;
+import org.codehaus.plexus.util.SelectorUtils;
+
+/**
+ * Copies changed resource files to output directories without executing Maven build.
+ * <br>
+ * <br>
+ * Resource roots, includes, excludes and target paths are taken from modules' resource configuration.
+ * Changes of filtered resources, routes files, deleted files and files not belonging to any resource root
+ * cannot be synchronized, Maven build has to be executed for them.
+ */
+public class MavenPlay2ResourceSynchronizer
+{
+    private static final String[] ROUTES_INCLUDES = new String[] { "*.routes", "routes" };
+
+    private MavenPlay2ProjectIndex projectIndex;
+
+    private Log logger;
+
+    public MavenPlay2ResourceSynchronizer( MavenPlay2ProjectIndex projectIndex, Log logger )
+    {
+        this.projectIndex = projectIndex;
+        this.logger = logger;
+    }
+
+    /**
+     * Copies changed files to output directories if all of them are unfiltered resources.
+     *
+     * @param changedFilePaths absolute changed file paths
+     * @return modules with updated output directories or null if nothing was copied
+     *         because some files cannot be synchronized
+     */
+    public List<MavenProject> synchronize( Set<String> changedFilePaths )
+    {
+        long start = System.currentTimeMillis();
+        Map<File, File> filesToCopy = new LinkedHashMap<File, File>( changedFilePaths.size() );
+        List<MavenProject> result = new ArrayList<MavenProject>();
+        for ( String path: changedFilePaths )
+        {
+            File file = new File( path );
+            if ( !file.isFile() )
+            {
+                logger.debug( "Resource synchronization not possible, \"" + path + "\" file deleted" );
+                return null;
+            }
+            MavenProject project = null;
+            File targetFile = null;
+            for ( MavenPlay2ProjectIndex.Root root: projectIndex.findRootsFor( path ) )
+            {
+                Resource resource = root.getResource();
+                if ( resource == null )
+                {
+                    logger.debug( "Resource synchronization not possible, \"" + path + "\" is a source file" );
+                    return null;
+                }
+                String relativePath = getRelativePath( resource.getDirectory(), path );
+                if ( relativePath != null && isIncluded( resource, relativePath ) )
+                {
+                    if ( resource.isFiltering() )
+                    {
+                        logger.debug( "Resource synchronization not possible, \"" + path + "\" is filtered" );
+                        return null;
+                    }
+                    if ( isRoutesFile( resource, relativePath ) )
+                    {
+                        logger.debug( "Resource synchronization not possible, \"" + path + "\" is compiled" );
+                        return null;
+                    }
+                    project = root.getProject();
+                    targetFile = new File( getTargetDirectory( project, resource ), relativePath );
+                    break;
+                }
+            }
+            if ( project == null )
+            {
+                logger.debug( "Resource synchronization not possible, \"" + path + "\" is not a resource" );
+                return null;
+            }
+            filesToCopy.put( file, targetFile );
+            if ( !result.contains( project ) )
+            {
+                result.add( project );
+            }
+        }
+
+        for ( Map.Entry<File, File> entry: filesToCopy.entrySet() )
+        {
+            try
+            {
+                FileUtils.copyFile( entry.getKey(), entry.getValue() );
+            }
+            catch ( IOException e )
+            {
+                logger.debug( "Resource synchronization failed: " + e.getMessage() );
+                return null; // Maven build will copy all the files again
+            }
+        }
+        logger.info( "Copied " + filesToCopy.size() + " resource file(s) in "
+            + ( System.currentTimeMillis() - start ) + " ms" );
+        return result;
+    }
+
+    // the same rules as in Play2RoutesCompileMojo
+    private static boolean isRoutesFile( Resource resource, String relativePath )
+    {
+        if ( "public".equals( resource.getTargetPath() ) ) // web assets
+        {
+            return false;
+        }
+        for ( String routesInclude: ROUTES_INCLUDES )
+        {
+            if ( SelectorUtils.matchPath( routesInclude, relativePath ) )
+            {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static String getRelativePath( String directory, String path )
+    {
+        if ( directory == null )
+        {
+            return null;
+        }
+        String directoryPath = new File( directory ).getAbsolutePath() + File.separator;
+        return path.startsWith( directoryPath ) ? path.substring( directoryPath.length() ) : null;
+    }
+
+    private static boolean isIncluded( Resource resource, String relativePath )
+    {
+        List<String> includes = resource.getIncludes();
+        boolean included = includes.isEmpty();
+        for ( String include: includes )
+        {
+            if ( SelectorUtils.matchPath( normalizePattern( include ), relativePath ) )
+            {
+                included = true;
+                break;
+            }
+        }
+        if ( !included )
+        {
+            return false;
+        }
+        for ( String exclude: resource.getExcludes() )
+        {
+            if ( SelectorUtils.matchPath( normalizePattern( exclude ), relativePath ) )
+            {
+                return false;
+            }
+        }
+        for ( String exclude: AbstractScanner.DEFAULTEXCLUDES ) // excluded by Maven Resources Plugin too
+        {
+            if ( SelectorUtils.matchPath( normalizePattern( exclude ), relativePath ) )
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // the same normalization as in DirectoryScanner
+    private static String normalizePattern( String pattern )
+    {
+        String result = pattern.trim().replace( '/', File.separatorChar ).replace( '\\', File.separatorChar );
+        if ( result.endsWith( File.separator ) )
+        {
+            result += "**";
+        }
+        return result;
+    }
+
+    private static File getTargetDirectory( MavenProject p, Resource resource )
+    {
+        File outputDirectory = new File( p.getBuild().getOutputDirectory() );
+        String targetPath = resource.getTargetPath();
+        if ( targetPath == null )
+        {
+            return outputDirectory;
+        }
+        File targetDirectory = new File( targetPath );
+        return targetDirectory.isAbsolute() ? targetDirectory : new File( outputDirectory, targetPath );
+    }
+
+}
@@ -0,0 +1,131 @@
+/*
+ * Copyright 2013-2020 Grzegorz Slowikowski (gslowikowski at gmail dot com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.google.code.play2.plugin;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+import com.google.code.sbt.compiler.api.Analysis;
+
+/**
+ * Top-level class name to source file index of one module, updated from SBT compiler analysis.
+ * <br>
+ * <br>
+ * Only sources compiled after the previous update are processed. Lookup uses sorted arrays
+ * of class names and their source files.
+ */
+public class MavenPlay2SourceIndex
+{
+    private static final String[] NO_CLASS_NAMES = new String[0];
+
+    private String classesDirectoryPath;
+
+    // Source file to top-level class names of its products
+    private Map<File, String[]> sourceClassNames = new HashMap<File, String[]>();
+
+    private long lastCompilationTime = 0L;
+
+    private String[] classNames = NO_CLASS_NAMES; // sorted
+
+    private File[] classSourceFiles = new File[0]; // source files of classNames elements
+
+    public MavenPlay2SourceIndex( File classesDirectory )
+    {
+        this.classesDirectoryPath = classesDirectory.getAbsolutePath() + File.separator;
+    }
+
+    /**
+     * Updates the index with sources compiled since the previous update and removes deleted sources.
+     *
+     * @param analysis module's compilation analysis
+     */
+    public void update( Analysis analysis )
+    {
+        Set<File> sourceFiles = analysis.getSourceFiles();
+        boolean changed = sourceClassNames.keySet().retainAll( sourceFiles );
+        long newestCompilationTime = lastCompilationTime;
+        for ( File sourceFile : sourceFiles )
+        {
+            long compilationTime = analysis.getCompilationTime( sourceFile );
+            // unknown compilation time (0) - always process
+            if ( compilationTime <= 0L || compilationTime > lastCompilationTime
+                || !sourceClassNames.containsKey( sourceFile ) )
+            {
+                sourceClassNames.put( sourceFile, getClassNames( analysis.getProducts( sourceFile ) ) );
+                changed = true;
+            }
+            newestCompilationTime = Math.max( newestCompilationTime, compilationTime );
+        }
+        lastCompilationTime = newestCompilationTime;
+        if ( changed )
+        {
+            rebuildLookupArrays();
+        }
+    }
+
+    /**
+     * Returns source file of top-level class.
+     *
+     * @param className top-level class name
+     * @return source file or null if not found
+     */
+    public File findSource( String className )
+    {
+        int i = Arrays.binarySearch( classNames, className );
+        return i >= 0 ? classSourceFiles[i] : null;
+    }
+
+    private String[] getClassNames( Set<File> products )
+    {
+        List<String> result = new ArrayList<String>( products.size() );
+        for ( File product : products )
+        {
+            String absolutePath = product.getAbsolutePath();
+            if ( absolutePath.contains( "$" ) || !absolutePath.startsWith( classesDirectoryPath ) )
+            {
+                continue; // skip inner and object classes
+            }
+            String relativePath = absolutePath.substring( classesDirectoryPath.length() );
+            String name = relativePath.substring( 0, relativePath.length() - ".class".length() );
+            name = name.replace( File.separator, "." );
+            result.add( name );
+        }
+        return result.isEmpty() ? NO_CLASS_NAMES : result.toArray( new String[result.size()] );
+    }
+
+    private void rebuildLookupArrays()
+    {
+        Map<String, File> sortedClassSourceFiles = new TreeMap<String, File>();
+        for ( Map.Entry<File, String[]> entry : sourceClassNames.entrySet() )
+        {
+            for ( String className : entry.getValue() )
+            {
+                sortedClassSourceFiles.put( className, entry.getKey() );
+            }
+        }
+        classNames = sortedClassSourceFiles.keySet().toArray( new String[sortedClassSourceFiles.size()] );
+        classSourceFiles = sortedClassSourceFiles.values().toArray( new File[sortedClassSourceFiles.size()] );
+    }
+
+}
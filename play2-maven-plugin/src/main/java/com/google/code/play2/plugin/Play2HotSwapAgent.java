@@ -0,0 +1,73 @@
+/*
+ * Copyright 2013-2020 Grzegorz Slowikowski (gslowikowski at gmail dot com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.google.code.play2.plugin;
+
+import java.lang.instrument.Instrumentation;
+
+/**
+ * Java agent giving access to {@link Instrumentation} used to redefine application classes
+ * in place (hot swap) in development mode.
+ * <br>
+ * <br>
+ * The plugin jar file is the agent, Maven has to be started with
+ * {@code MAVEN_OPTS="-javaagent:/path/to/play2-maven-plugin.jar"}.
+ */
+public final class Play2HotSwapAgent
+{
+    private static volatile Instrumentation instrumentation;
+
+    private Play2HotSwapAgent()
+    {
+    }
+
+    public static void premain( String agentArgs, Instrumentation inst )
+    {
+        instrumentation = inst;
+    }
+
+    public static void agentmain( String agentArgs, Instrumentation inst )
+    {
+        instrumentation = inst;
+    }
+
+    public static Instrumentation getAgentInstrumentation()
+    {
+        return instrumentation;
+    }
+
+    /**
+     * Returns instrumentation instance if the agent was started, null otherwise.
+     * <br>
+     * <br>
+     * The agent class is loaded by the system classloader, not by the plugin's classloader,
+     * so its static state is accessed reflectively.
+     */
+    public static Instrumentation getInstrumentation()
+    {
+        try
+        {
+            Class<?> agentClass = ClassLoader.getSystemClassLoader().loadClass( Play2HotSwapAgent.class.getName() );
+            return (Instrumentation) agentClass.getMethod( "getAgentInstrumentation" ).invoke( null );
+        }
+        catch ( Exception e )
+        {
+            return null; // agent jar not on the system classpath
+        }
+    }
+
+}
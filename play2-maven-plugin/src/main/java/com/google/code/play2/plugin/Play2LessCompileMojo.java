@@ -93,6 +93,12 @@ public class Play2LessCompileMojo
         return lessEntryPointsExcludes;
     }
 
+    @Override
+    protected boolean isChangedFilesOnlySupported()
+    {
+        return false; // entry points have to be recompiled when imported files change
+    }
+
     @Override
     protected void compileAssets( File assetsSourceDirectory, String[] fileNames, File outputDirectory )
         throws AssetCompilationException, IOException, MojoExecutionException
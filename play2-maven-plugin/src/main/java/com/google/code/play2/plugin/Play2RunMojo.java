@@ -18,6 +18,7 @@
 package com.google.code.play2.plugin;
 
 import java.io.File;
+import java.lang.instrument.Instrumentation;
 import java.net.MalformedURLException;
 import java.net.URL;
 import java.net.URLClassLoader;
@@ -25,6 +26,7 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
@@ -157,6 +159,289 @@ public class Play2RunMojo
     @Parameter( property = "play2.runAdditionalGoals", defaultValue = "" )
     private String runAdditionalGoals;
 
+    /**
+     * Maven goals to execute during project rebuild, selected by types of changed files.
+     * <br>
+     * <br>
+     * Semicolon-separated list of {@code pattern=goals} entries, where {@code pattern} is an Ant-style pattern
+     * matched against changed file path relative to its module's base directory, and {@code goals} is
+     * a space-separated list of Maven goals or phases. The {@code play2:} goal prefix is replaced
+     * with this plugin's coordinates. The first matching entry is selected for every changed file, e.g.
+     * <br>
+     * <code>&#42;&#42;/&#42;.less=play2:less-compile resources:resources;conf/&#42;routes=compile;conf/&#42;&#42;=process-resources</code>
+     * <br>
+     * <br>
+     * If all changed files match some entry, goals of all selected entries are executed
+     * instead of {@code runGoals}, otherwise {@code runGoals} are executed. Only {@code runGoals} are executed
+     * during the first build and after build failures. Selected goals are executed in modules containing changed
+     * files and in all modules depending on them.
+     * <br>
+     * <br>
+     * Lifecycle phases execute all mojos bound to them, e.g. {@code compile} already executes
+     * {@code play2:template-compile} and {@code play2:routes-compile}, so they should not be listed together.
+     * Goals (e.g. {@code play2:less-compile}) are executed like goals given on the command line: they use
+     * plugin-level and {@code default-cli} execution configuration only, configuration of other
+     * {@code <execution>} elements in the POM is not applied.
+     * <br>
+     * <br>
+     * Changed files not processed by executed goals (because no selected goal executes the mojo processing them)
+     * are passed to mojos again in next builds, until they are processed.
+     * <br>
+     * <br>
+     * Empty value disables routing.
+     * <br>
+     * 
+     * @since 1.0.0
+     */
+    @Parameter( property = "play2.runGoalsRouting", defaultValue = "" )
+    private String runGoalsRouting;
+
+    /**
+     * Maximum number of reactor modules rebuilt concurrently.
+     * <br>
+     * <br>
+     * Modules being rebuilt are grouped by their depth in the reactor dependency graph.
+     * Modules in one group do not depend on each other and are rebuilt concurrently,
+     * each one in separate Maven execution. Groups are rebuilt one after another.
+     * <br>
+     * <br>
+     * Value {@code 1} means that all modules are rebuilt sequentially in one Maven execution.
+     * <br>
+     * 
+     * @since 1.0.0
+     */
+    @Parameter( property = "play2.runThreads", defaultValue = "1" )
+    private int runThreads;
+
+    /**
+     * Start project rebuild in the background as soon as file changes are detected.
+     * <br>
+     * <br>
+     * By default project is rebuilt when the next HTTP request is received. When enabled, the rebuild
+     * starts immediately (after {@code changeDebounceMillis} quiet period) and HTTP request only waits
+     * for its result. Changes detected during background rebuild are built by the next one.
+     * <br>
+     * 
+     * @since 1.0.0
+     */
+    @Parameter( property = "play2.backgroundBuild", defaultValue = "false" )
+    private boolean backgroundBuild;
+
+    /**
+     * Cancel running rebuild when new file changes are detected and start a new one.
+     * <br>
+     * <br>
+     * Running rebuild is stopped before the next project or mojo execution starts, mojo already running
+     * is not interrupted. Useful together with {@code backgroundBuild} when rebuilds take long time.
+     * <br>
+     * 
+     * @since 1.0.0
+     */
+    @Parameter( property = "play2.cancelSupersededBuilds", defaultValue = "false" )
+    private boolean cancelSupersededBuilds;
+
+    /**
+     * Reload application only if contents of at least one output file changed.
+     * <br>
+     * <br>
+     * Length and checksum of every output file are remembered and recalculated when the file's modification time
+     * changes, so rebuilds rewriting identical class files and resources (e.g. after comment-only source changes)
+     * do not reload the application.
+     * <br>
+     * 
+     * @since 1.0.0
+     */
+    @Parameter( property = "play2.compareOutputContents", defaultValue = "false" )
+    private boolean compareOutputContents;
+
+    /**
+     * Copy changed resources directly to output directories instead of executing build goals.
+     * <br>
+     * <br>
+     * Used only if all changed files are unfiltered resources (except routes files). Resource directories,
+     * includes, excludes and target paths are taken from the modules' configuration. Other changes
+     * are built as usual.
+     * <br>
+     * 
+     * @since 1.0.0
+     */
+    @Parameter( property = "play2.syncResources", defaultValue = "false" )
+    private boolean syncResources;
+
+    /**
+     * Skip the initial build if nothing changed since previous execution.
+     * <br>
+     * <br>
+     * Fingerprints of sources, resources and output directories of all modules are written to
+     * {@code target/play2-builder.state} file when the server stops without pending changes.
+     * On the next start they are compared with the file system and if they match, the application
+     * is started without executing build goals.
+     * <br>
+     * 
+     * @since 1.0.0
+     */
+    @Parameter( property = "play2.warmStart", defaultValue = "false" )
+    private boolean warmStart;
+
+    /**
+     * Serve requests with the previously loaded application while the project is rebuilt.
+     * <br>
+     * <br>
+     * By default requests wait for the rebuild to finish. When enabled, the rebuild runs in the background
+     * and the new application version is used by the first request received after the rebuild finished.
+     * Requests received before the application is loaded for the first time still wait for the build.
+     * <br>
+     * <br>
+     * The rebuild rewrites output directories used by the serving application, so all its classes are loaded
+     * in the background right after it is loaded, before the next rebuild starts. Resources are still read
+     * from output directories, the serving application can see resources changed by the running rebuild.
+     * Rebuilds started on file changes by {@code backgroundBuild} do not wait for classes loading.
+     * <br>
+     * <br>
+     * After a failed rebuild its error is returned to all requests until files change again.
+     * <br>
+     * 
+     * @since 1.0.0
+     */
+    @Parameter( property = "play2.serveStaleWhileRebuilding", defaultValue = "false" )
+    private boolean serveStaleWhileRebuilding;
+
+    /**
+     * Use separate classloader for every reactor module on the classpath.
+     * <br>
+     * <br>
+     * Classloaders are chained in reactor order. On reload, only classloaders of rebuilt modules
+     * and the modules following them are recreated, classes of unchanged upstream modules are reused.
+     * <br>
+     * 
+     * @since 1.0.0
+     */
+    @Parameter( property = "play2.layeredClassLoaders", defaultValue = "false" )
+    private boolean layeredClassLoaders;
+
+    /**
+     * Find application classes and resources using output directories index created after every build.
+     * <br>
+     * <br>
+     * Application classloader looks up classes and resources in memory instead of probing
+     * every output directory.
+     * <br>
+     * 
+     * @since 1.0.0
+     */
+    @Parameter( property = "play2.indexedClassLoaders", defaultValue = "false" )
+    private boolean indexedClassLoaders;
+
+    /**
+     * Preload classes used by the previous application version in the new one before the application is reloaded.
+     * <br>
+     * 
+     * @since 1.0.0
+     */
+    @Parameter( property = "play2.preloadClasses", defaultValue = "false" )
+    private boolean preloadClasses;
+
+    /**
+     * Initialize preloaded classes of generated templates ({@code views} package) and routes
+     * ({@code router} package).
+     * <br>
+     * <br>
+     * Used only if {@code preloadClasses} is enabled.
+     * <br>
+     * 
+     * @since 1.0.0
+     */
+    @Parameter( property = "play2.initializePreloadedClasses", defaultValue = "false" )
+    private boolean initializePreloadedClasses;
+
+    /**
+     * Redefine changed classes in place instead of reloading the application, if only method bodies changed.
+     * <br>
+     * <br>
+     * Requires Maven to be started with the plugin jar file as Java agent, e.g.
+     * {@code MAVEN_OPTS="-javaagent:/path/to/play2-maven-plugin.jar"}.
+     * If classes were added or removed, or their fields or method signatures changed,
+     * the application is reloaded as usual.
+     * <br>
+     * 
+     * @since 1.0.0
+     */
+    @Parameter( property = "play2.hotSwap", defaultValue = "false" )
+    private boolean hotSwap;
+
+    /**
+     * Restart the application with the current classloader if only resources (not classes) changed.
+     * <br>
+     * <br>
+     * Configuration and messages files changes are applied without loading application classes again.
+     * The application is still restarted, but state kept in static fields of application classes
+     * is not reset. If classes changed too, the application classloader is recreated, unless
+     * the classes can be redefined (see {@code hotSwap}).
+     * <br>
+     * 
+     * @since 1.0.0
+     */
+    @Parameter( property = "play2.keepClassLoaderOnResourceChanges", defaultValue = "false" )
+    private boolean keepClassLoaderOnResourceChanges;
+
+    /**
+     * Serve assets using assets output directory contents index.
+     * <br>
+     * <br>
+     * The index is created on first asset request after every project rebuild. Assets written to the assets
+     * output directory by external tools between rebuilds are not found until the next rebuild.
+     * <br>
+     * 
+     * @since 1.0.0
+     */
+    @Parameter( property = "play2.indexedAssets", defaultValue = "false" )
+    private boolean indexedAssets;
+
+    /**
+     * Find dependency classpath resources using an index of dependency jars contents.
+     * <br>
+     * <br>
+     * The index is created at startup. Jar files which cannot be indexed are searched without the index.
+     * If disabled, dependency classpath is searched as by standard {@code URLClassLoader}
+     * and {@code dependencyClasspathIndex} is ignored.
+     * <br>
+     * 
+     * @since 1.0.0
+     */
+    @Parameter( property = "play2.indexedDependencyClasspath", defaultValue = "true" )
+    private boolean indexedDependencyClasspath;
+
+    /**
+     * Store dependency classpath index in project build directory and reuse it in next runs.
+     * <br>
+     * <br>
+     * The index is recreated when any dependency changes, index files of previous dependency classpaths
+     * are deleted then. Dependency classes are loaded directly from the jar files containing them,
+     * without searching the whole classpath. Multi-release jars and jars with {@code Class-Path} manifest
+     * attribute are searched as by standard {@code URLClassLoader}.
+     * <br>
+     * 
+     * @since 1.0.0
+     */
+    @Parameter( property = "play2.dependencyClasspathIndex", defaultValue = "false" )
+    private boolean dependencyClasspathIndex;
+
+    /**
+     * Quiet period (in milliseconds) after the last detected file change before the project is rebuilt.
+     * <br>
+     * <br>
+     * All file changes detected until no new change occurs for this period are processed by one rebuild.
+     * Useful when many files change in a short time, e.g. during VCS branch switching.
+     * <br>
+     * <br>
+     * Zero value disables waiting.
+     * <br>
+     * 
+     * @since 1.0.0
+     */
+    @Parameter( property = "play2.changeDebounceMillis", defaultValue = "0" )
+    private long changeDebounceMillis;
+
     /**
      * Additional JVM arguments passed to Play! server's JVM.
      * <br>
@@ -332,6 +617,7 @@ public class Play2RunMojo
         List<String> additionalGoals =
             runAdditionalGoals != null && !"".equals( runAdditionalGoals ) ? Arrays.asList( runAdditionalGoals.trim().split( " " ) )
                             : Collections.<String>emptyList();
+        Map<String, List<String>> goalsRouting = parseGoalsRouting( runGoalsRouting );
 
         if ( !assetsPrefix.endsWith( "/" ) )
         {
@@ -483,8 +769,13 @@ public class Play2RunMojo
                 playWatchService = null;
             }
 
+            File builderStateFile =
+                warmStart ? new File( project.getBuild().getDirectory(), "play2-builder.state" ) : null;
             Play2Builder buildLink =
-                new MavenPlay2Builder( allRequiredReactorModules, sourceEncoding, goals, additionalGoals, assetsPrefix,
+                new MavenPlay2Builder( allRequiredReactorModules, sourceEncoding, goals, additionalGoals, goalsRouting,
+                                       assetsPrefix, changeDebounceMillis, runThreads, backgroundBuild,
+                                       cancelSupersededBuilds, compareOutputContents, syncResources,
+                                       builderStateFile,
                                        getLog(), session, lifecycleExecutor, container,
                                        templateCompilationOutputDirectory, sbtAnalysisProcessor, playWatchService );
 
@@ -492,6 +783,11 @@ public class Play2RunMojo
             configuration.setBaseDirectory( baseDir );
             configuration.setOutputDirectories( outputDirectories );
             configuration.setDependencyClasspath( dependencyClasspath );
+            configuration.setIndexedDependencyClasspath( indexedDependencyClasspath );
+            if ( dependencyClasspathIndex )
+            {
+                configuration.setDependencyClasspathIndexDirectory( new File( project.getBuild().getDirectory() ) );
+            }
             configuration.setDocsFile( playDocsFile );
             configuration.setDocsClasspath( playDocsClasspath );
             configuration.setHttpPort( resolvedHttpPort );
@@ -499,8 +795,28 @@ public class Play2RunMojo
             configuration.setHttpAddress( resolvedHttpAddress );
             configuration.setAssetsPrefix( assetsPrefix );
             configuration.setAssetsDirectory( assetsOutputDirectory );
+            configuration.setIndexedAssets( indexedAssets );
             configuration.setDevSettings( devSettingsMap );
             configuration.setBuildLink( buildLink );
+            configuration.setServeStaleWhileRebuilding( serveStaleWhileRebuilding );
+            configuration.setLayeredClassLoaders( layeredClassLoaders );
+            configuration.setIndexedClassLoaders( indexedClassLoaders );
+            configuration.setPreloadClasses( preloadClasses );
+            configuration.setInitializePreloadedClasses( initializePreloadedClasses );
+            configuration.setKeepClassLoaderOnResourceChanges( keepClassLoaderOnResourceChanges );
+            if ( hotSwap )
+            {
+                Instrumentation instrumentation = Play2HotSwapAgent.getInstrumentation();
+                if ( instrumentation != null && instrumentation.isRedefineClassesSupported() )
+                {
+                    configuration.setInstrumentation( instrumentation );
+                }
+                else
+                {
+                    getLog().warn( "Hot swap disabled, Maven was not started with play2-maven-plugin Java agent" );
+                }
+            }
+            configuration.setLogger( new MavenPlay2RunnerLogger( getLog() ) );
 
             try
             {
@@ -550,6 +866,40 @@ public class Play2RunMojo
         return generatedDirectory;
     }
 
+    private Map<String, List<String>> parseGoalsRouting( String routing )
+        throws MojoExecutionException
+    {
+        Map<String, List<String>> result = new LinkedHashMap<String, List<String>>();
+        if ( routing != null )
+        {
+            String play2GoalPrefix = String.format( "%s:%s:%s:", pluginGroupId, "play2-maven-plugin", pluginVersion );
+            for ( String entry : routing.trim().split( ";" ) )
+            {
+                String trimmedEntry = entry.trim();
+                if ( trimmedEntry.length() > 0 )
+                {
+                    String[] patternAndGoals = trimmedEntry.split( "=", 2 );
+                    if ( patternAndGoals.length < 2 || patternAndGoals[1].trim().length() == 0 )
+                    {
+                        throw new MojoExecutionException( "Invalid goals routing entry: " + trimmedEntry );
+                    }
+                    List<String> entryGoals = new ArrayList<String>();
+                    for ( String goal : patternAndGoals[1].trim().split( " " ) )
+                    {
+                        if ( goal.length() > 0 )
+                        {
+                            entryGoals.add( goal.startsWith( "play2:" )
+                                            ? play2GoalPrefix + goal.substring( "play2:".length() ) : goal );
+                        }
+                    }
+                    result.put( patternAndGoals[0].trim(), entryGoals );
+                    getLog().debug( String.format( "Goals routing: \"%s\" -> %s", patternAndGoals[0].trim(), entryGoals ) );
+                }
+            }
+        }
+        return result;
+    }
+
     private Integer parsePortValue( String portValue, Integer defaultValue )
     {
         Integer result = defaultValue;
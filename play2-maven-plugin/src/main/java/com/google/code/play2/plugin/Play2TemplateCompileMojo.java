@@ -117,6 +117,7 @@ public class Play2TemplateCompileMojo
 
         int processedFiles = 0;
         int compiledFiles = 0;
+        boolean changedFilesOnly = false;
         TemplateCompilationException firstException = null;
 
         List<File> templateSourceDirectories = getTemplateSourceDirectories();
@@ -124,12 +125,20 @@ public class Play2TemplateCompileMojo
         {
             if ( templateSourceDirectory.isDirectory() )
             {
-                DirectoryScanner scanner = new DirectoryScanner();
-                scanner.setBasedir( templateSourceDirectory );
-                scanner.setIncludes( SCALA_TEMPLATES_INCLUDES );
-                scanner.addDefaultExcludes();
-                scanner.scan();
-                String[] files = scanner.getIncludedFiles();
+                String[] files = getChangedFiles( templateSourceDirectory, SCALA_TEMPLATES_INCLUDES, null );
+                if ( files != null )
+                {
+                    changedFilesOnly = true; // other templates did not change since previous build
+                }
+                else
+                {
+                    DirectoryScanner scanner = new DirectoryScanner();
+                    scanner.setBasedir( templateSourceDirectory );
+                    scanner.setIncludes( SCALA_TEMPLATES_INCLUDES );
+                    scanner.addDefaultExcludes();
+                    scanner.scan();
+                    files = scanner.getIncludedFiles();
+                }
 
                 if ( files.length > 0 )
                 {
@@ -179,6 +188,13 @@ public class Play2TemplateCompileMojo
             addSourceRoot( generatedDirectory );
             configureSourcePositionMappers();
         }
+        else if ( changedFilesOnly && generatedDirectory.isDirectory() )
+        {
+            getLog().info( "No changed templates" );
+
+            addSourceRoot( generatedDirectory ); // templates compiled by previous builds
+            configureSourcePositionMappers();
+        }
         else
         {
             getLog().info( "No templates to compile" );
@@ -18,14 +18,60 @@
 package com.google.code.play2.provider.api;
 
 import java.io.Closeable;
+import java.io.File;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 public interface Play2Builder
     extends Closeable
 {
     boolean/*Play2BuildResult*/ build() throws Play2BuildFailure, Play2BuildError;
 
+    /**
+     * Cheap, lock-free check called on every request before {@link #build()}.
+     *
+     * @return {@code false} if nothing changed since the last build and {@link #build()} would not rebuild
+     * nor request reload
+     */
+    boolean isBuildRequired();
+
     void forceReload();
 
+    /**
+     * Cheap, lock-free check used to find out whether files changed since some moment,
+     * without building anything.
+     *
+     * @return number of file changes detected so far
+     */
+    long getChangesCount();
+
+    /**
+     * Returns output directories of modules rebuilt since the previous call, used to recreate
+     * only changed modules classloaders.
+     *
+     * @return changed output directories, all the output directories if full reload was forced
+     */
+    Set<File> consumeChangedOutputDirectories();
+
+    /**
+     * Returns output files modified since the previous call, used to redefine changed classes
+     * instead of reloading the application.
+     *
+     * @return modified output files, or null if files were added or removed, or full reload was forced
+     */
+    Set<File> consumeChangedOutputFiles();
+
+    /**
+     * Returns contents of output directories found after the last build, used for classes and resources
+     * lookup without file system probing. Files inside assets directory are not included.
+     *
+     * @param outputDirectories output directories, files from preceding directories take precedence
+     * @return map from '/' separated path relative to output directory to the file, or null if some
+     * of the directories were not scanned yet
+     */
+    Map<String, File> getOutputIndex( List<File> outputDirectories );
+
     Object[] findSource( String className, Integer line );
 
 }
@@ -19,6 +19,7 @@ package com.google.code.play2.provider.api;
 
 import java.io.File;
 import java.io.Serializable;
+import java.lang.instrument.Instrumentation;
 import java.util.List;
 import java.util.Map;
 
@@ -46,6 +47,16 @@ public class Play2RunnerConfiguration implements Serializable
      */
     private List<File> dependencyClasspath;
 
+    /**
+     * ...
+     */
+    private File dependencyClasspathIndexDirectory;
+
+    /**
+     * ...
+     */
+    private boolean indexedDependencyClasspath;
+
     /**
      * ...
      */
@@ -81,6 +92,11 @@ public class Play2RunnerConfiguration implements Serializable
      */
     private File assetsDirectory;
 
+    /**
+     * ...
+     */
+    private boolean indexedAssets;
+
     /**
      * ...
      */
@@ -91,6 +107,46 @@ public class Play2RunnerConfiguration implements Serializable
      */
     private transient Play2Builder buildLink;
 
+    /**
+     * ...
+     */
+    private boolean serveStaleWhileRebuilding;
+
+    /**
+     * ...
+     */
+    private boolean layeredClassLoaders;
+
+    /**
+     * ...
+     */
+    private boolean indexedClassLoaders;
+
+    /**
+     * ...
+     */
+    private boolean preloadClasses;
+
+    /**
+     * ...
+     */
+    private boolean initializePreloadedClasses;
+
+    /**
+     * ...
+     */
+    private boolean keepClassLoaderOnResourceChanges;
+
+    /**
+     * ...
+     */
+    private transient Instrumentation instrumentation;
+
+    /**
+     * ...
+     */
+    private transient Play2RunnerLogger logger;
+
     /**
      * Returns ... .
      * 
@@ -151,6 +207,46 @@ public class Play2RunnerConfiguration implements Serializable
         this.dependencyClasspath = dependencyClasspath;
     }
 
+    /**
+     * Returns ... .
+     * 
+     * @return ...
+     */
+    public File getDependencyClasspathIndexDirectory()
+    {
+        return dependencyClasspathIndexDirectory;
+    }
+
+    /**
+     * Sets ... .
+     * 
+     * @param dependencyClasspathIndexDirectory ...
+     */
+    public void setDependencyClasspathIndexDirectory( File dependencyClasspathIndexDirectory )
+    {
+        this.dependencyClasspathIndexDirectory = dependencyClasspathIndexDirectory;
+    }
+
+    /**
+     * Returns ... .
+     * 
+     * @return ...
+     */
+    public boolean isIndexedDependencyClasspath()
+    {
+        return indexedDependencyClasspath;
+    }
+
+    /**
+     * Sets ... .
+     * 
+     * @param indexedDependencyClasspath ...
+     */
+    public void setIndexedDependencyClasspath( boolean indexedDependencyClasspath )
+    {
+        this.indexedDependencyClasspath = indexedDependencyClasspath;
+    }
+
     /**
      * Returns ... .
      * 
@@ -291,6 +387,26 @@ public class Play2RunnerConfiguration implements Serializable
         this.assetsDirectory = assetsDirectory;
     }
 
+    /**
+     * Returns ... .
+     * 
+     * @return ...
+     */
+    public boolean isIndexedAssets()
+    {
+        return indexedAssets;
+    }
+
+    /**
+     * Sets ... .
+     * 
+     * @param indexedAssets ...
+     */
+    public void setIndexedAssets( boolean indexedAssets )
+    {
+        this.indexedAssets = indexedAssets;
+    }
+
     /**
      * Returns ... .
      * 
@@ -331,4 +447,164 @@ public class Play2RunnerConfiguration implements Serializable
         this.buildLink = buildLink;
     }
 
+    /**
+     * Returns ... .
+     * 
+     * @return ...
+     */
+    public boolean isServeStaleWhileRebuilding()
+    {
+        return serveStaleWhileRebuilding;
+    }
+
+    /**
+     * Sets ... .
+     * 
+     * @param serveStaleWhileRebuilding ...
+     */
+    public void setServeStaleWhileRebuilding( boolean serveStaleWhileRebuilding )
+    {
+        this.serveStaleWhileRebuilding = serveStaleWhileRebuilding;
+    }
+
+    /**
+     * Returns ... .
+     * 
+     * @return ...
+     */
+    public boolean isLayeredClassLoaders()
+    {
+        return layeredClassLoaders;
+    }
+
+    /**
+     * Sets ... .
+     * 
+     * @param layeredClassLoaders ...
+     */
+    public void setLayeredClassLoaders( boolean layeredClassLoaders )
+    {
+        this.layeredClassLoaders = layeredClassLoaders;
+    }
+
+    /**
+     * Returns ... .
+     * 
+     * @return ...
+     */
+    public boolean isIndexedClassLoaders()
+    {
+        return indexedClassLoaders;
+    }
+
+    /**
+     * Sets ... .
+     * 
+     * @param indexedClassLoaders ...
+     */
+    public void setIndexedClassLoaders( boolean indexedClassLoaders )
+    {
+        this.indexedClassLoaders = indexedClassLoaders;
+    }
+
+    /**
+     * Returns ... .
+     * 
+     * @return ...
+     */
+    public boolean isPreloadClasses()
+    {
+        return preloadClasses;
+    }
+
+    /**
+     * Sets ... .
+     * 
+     * @param preloadClasses ...
+     */
+    public void setPreloadClasses( boolean preloadClasses )
+    {
+        this.preloadClasses = preloadClasses;
+    }
+
+    /**
+     * Returns ... .
+     * 
+     * @return ...
+     */
+    public boolean isInitializePreloadedClasses()
+    {
+        return initializePreloadedClasses;
+    }
+
+    /**
+     * Sets ... .
+     * 
+     * @param initializePreloadedClasses ...
+     */
+    public void setInitializePreloadedClasses( boolean initializePreloadedClasses )
+    {
+        this.initializePreloadedClasses = initializePreloadedClasses;
+    }
+
+    /**
+     * Returns ... .
+     * 
+     * @return ...
+     */
+    public boolean isKeepClassLoaderOnResourceChanges()
+    {
+        return keepClassLoaderOnResourceChanges;
+    }
+
+    /**
+     * Sets ... .
+     * 
+     * @param keepClassLoaderOnResourceChanges ...
+     */
+    public void setKeepClassLoaderOnResourceChanges( boolean keepClassLoaderOnResourceChanges )
+    {
+        this.keepClassLoaderOnResourceChanges = keepClassLoaderOnResourceChanges;
+    }
+
+    /**
+     * Returns ... .
+     * 
+     * @return ...
+     */
+    public Instrumentation getInstrumentation()
+    {
+        return instrumentation;
+    }
+
+    /**
+     * Sets ... .
+     * 
+     * @param instrumentation ...
+     */
+    public void setInstrumentation( Instrumentation instrumentation )
+    {
+        this.instrumentation = instrumentation;
+    }
+
+    /**
+     * Returns ... .
+     * 
+     * @return ...
+     */
+    public Play2RunnerLogger getLogger()
+    {
+        return logger;
+    }
+
+    /**
+     * Sets ... .
+     * 
+     * @param logger ...
+     */
+    public void setLogger( Play2RunnerLogger logger )
+    {
+        this.logger = logger;
+    }
+
 }
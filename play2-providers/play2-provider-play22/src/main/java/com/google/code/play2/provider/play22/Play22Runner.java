@@ -38,6 +38,7 @@ import com.google.code.play2.provider.api.Play2DevServer;
 import com.google.code.play2.provider.api.Play2Runner;
 import com.google.code.play2.provider.api.Play2RunnerConfiguration;
 
+import com.google.code.play2.provider.play22.run.IndexedURLClassLoader;
 import com.google.code.play2.provider.play22.run.NamedURLClassLoader;
 import com.google.code.play2.provider.play22.run.Reloader;
 import com.google.code.play2.provider.play22.run.ReloaderApplicationClassLoaderProvider;
@@ -93,13 +94,24 @@ public class Play22Runner
         ClassLoader delegatingLoader =
             new DelegatingClassLoader( commonClassLoader, BUILD_SHARED_CLASSES, buildLoader,
                                        applicationClassLoaderProvider );
-        ClassLoader applicationLoader =
-            new NamedURLClassLoader( "PlayDependencyClassLoader",
-                                     Reloader.toUrls( configuration.getDependencyClasspath() ), delegatingLoader );
+        URL[] dependencyUrls = Reloader.toUrls( configuration.getDependencyClasspath() );
+        IndexedURLClassLoader indexedApplicationLoader = null;
+        ClassLoader applicationLoader;
+        if ( configuration.isIndexedDependencyClasspath() )
+        {
+            indexedApplicationLoader =
+                new IndexedURLClassLoader( "PlayDependencyClassLoader", dependencyUrls, delegatingLoader,
+                                           configuration.getDependencyClasspathIndexDirectory(),
+                                           configuration.getLogger() );
+            applicationLoader = indexedApplicationLoader;
+        }
+        else
+        {
+            applicationLoader =
+                new NamedURLClassLoader( "PlayDependencyClassLoader", dependencyUrls, delegatingLoader );
+        }
 
-        Reloader reloader =
-            new Reloader( configuration.getBuildLink(), applicationLoader, configuration.getBaseDirectory(),
-                          configuration.getOutputDirectories(), configuration.getDevSettings() );
+        Reloader reloader = new Reloader( applicationLoader, configuration );
         applicationClassLoaderProvider.setReloader( reloader );
 
         ClassLoader docsLoader =
@@ -117,7 +129,7 @@ public class Play22Runner
         Method mainDev = mainClass.getMethod( mainMethod, SBTLink.class, SBTDocHandler.class, Integer.TYPE );
         ServerWithStop server = (ServerWithStop) mainDev.invoke( null, reloader, sbtDocHandler, port );
 
-        return new ReloaderPlayDevServer( server, docsJarFile, reloader );
+        return new ReloaderPlayDevServer( server, docsJarFile, reloader, indexedApplicationLoader );
     }
 
     private ClassLoader commonClassLoader( List<File> classpath )
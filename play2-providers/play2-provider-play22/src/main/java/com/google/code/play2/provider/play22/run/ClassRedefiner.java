@@ -0,0 +1,358 @@
+/*
+ * Copyright 2013-2020 Grzegorz Slowikowski (gslowikowski at gmail dot com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.google.code.play2.provider.play22.run;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.lang.instrument.ClassDefinition;
+import java.lang.instrument.Instrumentation;
+import java.lang.instrument.UnmodifiableClassException;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import com.google.code.play2.provider.api.Play2RunnerLogger;
+
+/**
+ * Redefines changed classes of the current application classloader generation in place,
+ * if only method bodies changed (class hierarchy, fields and method signatures are the same).
+ */
+public class ClassRedefiner
+{
+    private static final int MEMBER_MODIFIERS = Modifier.PUBLIC | Modifier.PRIVATE | Modifier.PROTECTED
+        | Modifier.STATIC | Modifier.FINAL | Modifier.ABSTRACT | Modifier.NATIVE;
+
+    private Instrumentation instrumentation;
+
+    private List<File> outputDirectories;
+
+    private Play2RunnerLogger logger;
+
+    public ClassRedefiner( Instrumentation instrumentation, List<File> outputDirectories, Play2RunnerLogger logger )
+    {
+        this.instrumentation = instrumentation;
+        this.outputDirectories = outputDirectories;
+        this.logger = logger;
+    }
+
+    /**
+     * Redefines classes loaded from changed files.
+     *
+     * @param changedOutputFiles modified output files, null if files were added or removed
+     * @param classLoader current application classloader
+     * @return true if all the changes were applied and the application does not need to be reloaded
+     */
+    public boolean redefine( Set<File> changedOutputFiles, DelegatedResourcesClassLoader classLoader )
+    {
+        if ( changedOutputFiles == null )
+        {
+            return false;
+        }
+
+        long start = System.currentTimeMillis();
+        List<ClassDefinition> definitions = new ArrayList<ClassDefinition>( changedOutputFiles.size() );
+        try
+        {
+            for ( File file: changedOutputFiles )
+            {
+                String className = toClassName( file );
+                if ( className == null )
+                {
+                    debug( "Hot swap not possible, resource changed: " + file.getPath() );
+                    return false;
+                }
+                Class<?> loadedClass = findLoadedClass( className, classLoader );
+                if ( loadedClass == null )
+                {
+                    continue; // not loaded yet, new version will be loaded from the file
+                }
+                byte[] bytes = DelegatedResourcesClassLoader.readFile( file );
+                if ( !hasSameShape( loadedClass, bytes ) )
+                {
+                    debug( "Hot swap not possible, class structure changed: " + className );
+                    return false;
+                }
+                definitions.add( new ClassDefinition( loadedClass, bytes ) );
+            }
+
+            instrumentation.redefineClasses( definitions.toArray( new ClassDefinition[definitions.size()] ) );
+        }
+        catch ( IOException e )
+        {
+            debug( "Hot swap failed: " + e.getMessage() );
+            return false;
+        }
+        catch ( ClassNotFoundException e )
+        {
+            debug( "Hot swap failed: " + e.getMessage() );
+            return false;
+        }
+        catch ( UnmodifiableClassException e )
+        {
+            debug( "Hot swap failed: " + e.getMessage() );
+            return false;
+        }
+        catch ( UnsupportedOperationException e )
+        {
+            debug( "Hot swap failed: " + e.getMessage() );
+            return false;
+        }
+        catch ( LinkageError e )
+        {
+            debug( "Hot swap failed: " + e.getMessage() );
+            return false;
+        }
+
+        if ( logger != null )
+        {
+            logger.info( "Redefined " + definitions.size() + " classes in " + classLoader + " in "
+                + ( System.currentTimeMillis() - start ) + " ms" );
+        }
+        return true;
+    }
+
+    private String toClassName( File file )
+    {
+        String path = file.getAbsolutePath();
+        if ( !path.endsWith( ".class" ) )
+        {
+            return null;
+        }
+        for ( File outputDirectory: outputDirectories )
+        {
+            String outputDirectoryPath = outputDirectory.getAbsolutePath() + File.separator;
+            if ( path.startsWith( outputDirectoryPath ) )
+            {
+                String relativePath = path.substring( outputDirectoryPath.length(), path.length() - ".class".length() );
+                return relativePath.replace( File.separatorChar, '.' );
+            }
+        }
+        return null;
+    }
+
+    private static Class<?> findLoadedClass( String className, DelegatedResourcesClassLoader classLoader )
+    {
+        for ( DelegatedResourcesClassLoader layer: classLoader.getLayers() )
+        {
+            Class<?> result = layer.getLoadedClass( className );
+            if ( result != null && result.getClassLoader() == layer )
+            {
+                return result;
+            }
+        }
+        return null;
+    }
+
+    private static boolean hasSameShape( Class<?> loadedClass, byte[] bytes )
+        throws IOException
+    {
+        Set<String> loadedShape = new HashSet<String>();
+        Class<?> superclass = loadedClass.getSuperclass();
+        loadedShape.add( "super " + ( superclass != null ? internalName( superclass ) : "java/lang/Object" ) );
+        for ( Class<?> iface: loadedClass.getInterfaces() )
+        {
+            loadedShape.add( "interface " + internalName( iface ) );
+        }
+        for ( Field field: loadedClass.getDeclaredFields() )
+        {
+            loadedShape.add( "field " + ( field.getModifiers() & MEMBER_MODIFIERS ) + " " + field.getName() + " "
+                + descriptor( field.getType() ) );
+        }
+        for ( Constructor<?> constructor: loadedClass.getDeclaredConstructors() )
+        {
+            loadedShape.add( "method " + ( constructor.getModifiers() & MEMBER_MODIFIERS ) + " <init> "
+                + descriptor( constructor.getParameterTypes(), Void.TYPE ) );
+        }
+        for ( Method method: loadedClass.getDeclaredMethods() )
+        {
+            loadedShape.add( "method " + ( method.getModifiers() & MEMBER_MODIFIERS ) + " " + method.getName() + " "
+                + descriptor( method.getParameterTypes(), method.getReturnType() ) );
+        }
+        return loadedShape.equals( readShape( bytes ) );
+    }
+
+    /**
+     * Reads superclass, interfaces, fields and methods (except static initializer) from class file.
+     */
+    private static Set<String> readShape( byte[] bytes )
+        throws IOException
+    {
+        DataInputStream in = new DataInputStream( new ByteArrayInputStream( bytes ) );
+        if ( in.readInt() != 0xCAFEBABE )
+        {
+            throw new IOException( "Not a class file" );
+        }
+        in.readUnsignedShort(); // minor version
+        in.readUnsignedShort(); // major version
+
+        int constantPoolCount = in.readUnsignedShort();
+        String[] utf8 = new String[constantPoolCount];
+        int[] classNameIndexes = new int[constantPoolCount];
+        for ( int i = 1; i < constantPoolCount; i++ )
+        {
+            int tag = in.readUnsignedByte();
+            switch ( tag )
+            {
+                case 1: // Utf8
+                    utf8[i] = in.readUTF();
+                    break;
+                case 7: // Class
+                    classNameIndexes[i] = in.readUnsignedShort();
+                    break;
+                case 8: // String
+                case 16: // MethodType
+                case 19: // Module
+                case 20: // Package
+                    in.skipBytes( 2 );
+                    break;
+                case 15: // MethodHandle
+                    in.skipBytes( 3 );
+                    break;
+                case 3: // Integer
+                case 4: // Float
+                case 9: // Fieldref
+                case 10: // Methodref
+                case 11: // InterfaceMethodref
+                case 12: // NameAndType
+                case 17: // Dynamic
+                case 18: // InvokeDynamic
+                    in.skipBytes( 4 );
+                    break;
+                case 5: // Long
+                case 6: // Double
+                    in.skipBytes( 8 );
+                    i++; // takes two entries
+                    break;
+                default:
+                    throw new IOException( "Unknown constant pool tag " + tag );
+            }
+        }
+
+        Set<String> result = new HashSet<String>();
+        in.readUnsignedShort(); // access flags
+        in.readUnsignedShort(); // this class
+        int superIndex = in.readUnsignedShort();
+        result.add( "super " + ( superIndex != 0 ? utf8[classNameIndexes[superIndex]] : "java/lang/Object" ) );
+        int interfacesCount = in.readUnsignedShort();
+        for ( int i = 0; i < interfacesCount; i++ )
+        {
+            result.add( "interface " + utf8[classNameIndexes[in.readUnsignedShort()]] );
+        }
+        readMembers( in, "field ", utf8, result );
+        readMembers( in, "method ", utf8, result );
+        return result;
+    }
+
+    private static void readMembers( DataInputStream in, String kind, String[] utf8, Set<String> result )
+        throws IOException
+    {
+        int count = in.readUnsignedShort();
+        for ( int i = 0; i < count; i++ )
+        {
+            int modifiers = in.readUnsignedShort() & MEMBER_MODIFIERS;
+            String name = utf8[in.readUnsignedShort()];
+            String descriptor = utf8[in.readUnsignedShort()];
+            int attributesCount = in.readUnsignedShort();
+            for ( int j = 0; j < attributesCount; j++ )
+            {
+                in.skipBytes( 2 );
+                in.skipBytes( in.readInt() );
+            }
+            if ( !"<clinit>".equals( name ) )
+            {
+                result.add( kind + modifiers + " " + name + " " + descriptor );
+            }
+        }
+    }
+
+    private static String internalName( Class<?> cls )
+    {
+        return cls.getName().replace( '.', '/' );
+    }
+
+    private static String descriptor( Class<?>[] parameterTypes, Class<?> returnType )
+    {
+        StringBuilder result = new StringBuilder( "(" );
+        for ( Class<?> parameterType: parameterTypes )
+        {
+            result.append( descriptor( parameterType ) );
+        }
+        return result.append( ')' ).append( descriptor( returnType ) ).toString();
+    }
+
+    private static String descriptor( Class<?> type )
+    {
+        if ( type.isArray() )
+        {
+            return internalName( type );
+        }
+        if ( !type.isPrimitive() )
+        {
+            return "L" + internalName( type ) + ";";
+        }
+        if ( type == Void.TYPE )
+        {
+            return "V";
+        }
+        if ( type == Boolean.TYPE )
+        {
+            return "Z";
+        }
+        if ( type == Byte.TYPE )
+        {
+            return "B";
+        }
+        if ( type == Character.TYPE )
+        {
+            return "C";
+        }
+        if ( type == Short.TYPE )
+        {
+            return "S";
+        }
+        if ( type == Integer.TYPE )
+        {
+            return "I";
+        }
+        if ( type == Long.TYPE )
+        {
+            return "J";
+        }
+        if ( type == Float.TYPE )
+        {
+            return "F";
+        }
+        return "D";
+    }
+
+    private void debug( String message )
+    {
+        if ( logger != null && logger.isDebugEnabled() )
+        {
+            logger.debug( message );
+        }
+    }
+
+}
@@ -0,0 +1,657 @@
+/*
+ * Copyright 2013-2020 Grzegorz Slowikowski (gslowikowski at gmail dot com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.google.code.play2.provider.play22.run;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.MalformedURLException;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.security.CodeSource;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.jar.Attributes;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.jar.Manifest;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import com.google.code.play2.provider.api.Play2RunnerLogger;
+
+/**
+ * Dependency classpath classloader finding resources in an index of jar contents instead of searching
+ * all the jars on every lookup. The index is created once, the classpath does not change.
+ * <br>
+ * <br>
+ * If the classpath contains something else than jar files, resources are searched as in {@link java.net.URLClassLoader}.
+ * Jar files which cannot be indexed are searched as in {@link java.net.URLClassLoader} in addition to the index.
+ * Multi-release jars and jars with {@code Class-Path} manifest attribute are not indexed too, their contents
+ * depend on Java version or on other jars.
+ * <br>
+ * <br>
+ * If index directory is given, the index is stored there and reused by next runs with the same classpath,
+ * and classes are loaded directly from jars containing them (classes not in the index are searched for
+ * in jars not indexed only). Index files stored for other classpaths are deleted.
+ */
+public class IndexedURLClassLoader
+    extends NamedURLClassLoader
+{
+    private static final String INDEX_FILE_NAME_PREFIX = "play2-dependency-index-";
+
+    // ASCII characters encoded in jar entry URLs, as in java.net.URLClassLoader (sun.net.www.ParseUtil.encodePath)
+    private static final String ENCODED_PATH_CHARACTERS = "=;?#%<>\"{}|\\^[]` ";
+
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+    private URL[] urls;
+
+    private Map<String, int[]> resourceIndex; // resource name to indexes of urls containing it, null if disabled
+
+    private boolean directClassLookup;
+
+    private JarFile[] jarFiles; // opened on first class lookup, used in direct class lookup mode only
+
+    private URLClassLoader fallbackLoader = null; // searches jars not indexed, resources only
+
+    public IndexedURLClassLoader( String name, URL[] urls, ClassLoader parent )
+        throws IOException
+    {
+        this( name, urls, parent, null, null );
+    }
+
+    public IndexedURLClassLoader( String name, URL[] urls, ClassLoader parent, File indexDirectory,
+                                  Play2RunnerLogger logger )
+        throws IOException
+    {
+        super( name, urls, parent );
+        this.urls = urls;
+        this.jarFiles = new JarFile[urls.length];
+        File indexFile = indexDirectory != null ? new File( indexDirectory, indexFileName( urls ) ) : null;
+        List<Integer> notIndexedUrlIndexes = new ArrayList<Integer>();
+        if ( indexFile != null && indexFile.isFile() )
+        {
+            this.resourceIndex = readIndex( indexFile, notIndexedUrlIndexes );
+        }
+        if ( this.resourceIndex == null )
+        {
+            notIndexedUrlIndexes.clear();
+            this.resourceIndex = createIndex( urls, notIndexedUrlIndexes, logger );
+            if ( indexFile != null && this.resourceIndex != null )
+            {
+                writeIndex( indexFile, this.resourceIndex, notIndexedUrlIndexes );
+                deleteStaleIndexFiles( indexFile );
+            }
+        }
+        if ( this.resourceIndex != null && !notIndexedUrlIndexes.isEmpty() )
+        {
+            URL[] notIndexedUrls = new URL[notIndexedUrlIndexes.size()];
+            for ( int i = 0; i < notIndexedUrls.length; i++ )
+            {
+                notIndexedUrls[i] = urls[notIndexedUrlIndexes.get( i ).intValue()];
+            }
+            this.fallbackLoader = new URLClassLoader( notIndexedUrls, null );
+        }
+        this.directClassLookup = indexDirectory != null && this.resourceIndex != null;
+    }
+
+    @Override
+    protected Class<?> findClass( String name )
+        throws ClassNotFoundException
+    {
+        if ( !directClassLookup )
+        {
+            return super.findClass( name );
+        }
+
+        String path = name.replace( '.', '/' ).concat( ".class" );
+        int[] urlIndexes = resourceIndex.get( path );
+        if ( urlIndexes == null )
+        {
+            if ( fallbackLoader != null && fallbackLoader.findResource( path ) != null )
+            {
+                return super.findClass( name ); // in a jar not indexed
+            }
+            throw new ClassNotFoundException( name );
+        }
+        int urlIndex = urlIndexes[0];
+        try
+        {
+            JarFile jarFile = getJarFile( urlIndex );
+            JarEntry entry = jarFile.getJarEntry( path );
+            if ( entry == null )
+            {
+                throw new ClassNotFoundException( name ); // jar changed after indexing
+            }
+            byte[] bytes = readEntry( jarFile, entry ); // must be read before getting code signers
+            definePackageFor( name, jarFile, urls[urlIndex] );
+            CodeSource codeSource = new CodeSource( urls[urlIndex], entry.getCodeSigners() );
+            return defineClass( name, bytes, 0, bytes.length, codeSource );
+        }
+        catch ( IOException e )
+        {
+            throw new ClassNotFoundException( name, e );
+        }
+    }
+
+    @Override
+    public URL findResource( String name )
+    {
+        if ( resourceIndex == null || name.endsWith( "/" ) )
+        {
+            return super.findResource( name );
+        }
+
+        URL result = null;
+        int[] urlIndexes = findIndexedUrlIndexes( name );
+        if ( urlIndexes != null )
+        {
+            result = jarEntryUrl( urlIndexes[0], name );
+        }
+        if ( result == null && fallbackLoader != null )
+        {
+            result = fallbackLoader.findResource( name );
+        }
+        return result;
+    }
+
+    @Override
+    public Enumeration<URL> findResources( String name )
+        throws IOException
+    {
+        if ( resourceIndex == null || name.endsWith( "/" ) )
+        {
+            return super.findResources( name );
+        }
+
+        List<URL> result = new ArrayList<URL>();
+        int[] urlIndexes = findIndexedUrlIndexes( name );
+        if ( urlIndexes != null )
+        {
+            for ( int urlIndex: urlIndexes )
+            {
+                URL url = jarEntryUrl( urlIndex, name );
+                if ( url != null )
+                {
+                    result.add( url );
+                }
+            }
+        }
+        if ( fallbackLoader != null )
+        {
+            result.addAll( Collections.list( fallbackLoader.findResources( name ) ) );
+        }
+        return Collections.enumeration( result );
+    }
+
+    /**
+     * Finds indexes of jars containing given entry. Directories can be looked up without trailing slash,
+     * as in {@link java.util.zip.ZipFile#getEntry(String)}.
+     */
+    private int[] findIndexedUrlIndexes( String name )
+    {
+        int[] result = resourceIndex.get( name );
+        if ( result == null )
+        {
+            result = resourceIndex.get( name + "/" );
+        }
+        return result;
+    }
+
+    /**
+     * Closes jar files opened by direct class lookup and by the fallback lookup of jars not indexed.
+     *
+     * @throws IOException I/O exception
+     */
+    // overrides URLClassLoader.close() in Java 7+
+    public void close()
+        throws IOException
+    {
+        synchronized ( this )
+        {
+            for ( int i = 0; i < jarFiles.length; i++ )
+            {
+                if ( jarFiles[i] != null )
+                {
+                    jarFiles[i].close();
+                    jarFiles[i] = null;
+                }
+            }
+        }
+        if ( fallbackLoader instanceof Closeable ) // Java 7+
+        {
+            ( (Closeable) fallbackLoader ).close();
+        }
+    }
+
+    private synchronized JarFile getJarFile( int urlIndex )
+        throws IOException
+    {
+        if ( jarFiles[urlIndex] == null )
+        {
+            jarFiles[urlIndex] = new JarFile( toFile( urls[urlIndex] ) );
+        }
+        return jarFiles[urlIndex];
+    }
+
+    private void definePackageFor( String className, JarFile jarFile, URL url )
+        throws IOException
+    {
+        int i = className.lastIndexOf( '.' );
+        if ( i > 0 )
+        {
+            String packageName = className.substring( 0, i );
+            if ( getPackage( packageName ) == null )
+            {
+                try
+                {
+                    Manifest manifest = jarFile.getManifest();
+                    if ( manifest != null )
+                    {
+                        definePackage( packageName, manifest, url );
+                    }
+                    else
+                    {
+                        definePackage( packageName, null, null, null, null, null, null, null );
+                    }
+                }
+                catch ( IllegalArgumentException e )
+                {
+                    // defined concurrently
+                }
+            }
+        }
+    }
+
+    private static byte[] readEntry( JarFile jarFile, JarEntry entry )
+        throws IOException
+    {
+        InputStream is = jarFile.getInputStream( entry );
+        try
+        {
+            long size = entry.getSize();
+            ByteArrayOutputStream os = new ByteArrayOutputStream( size > 0 ? (int) size : 8192 );
+            byte[] buffer = new byte[8192];
+            int n;
+            while ( ( n = is.read( buffer ) ) != -1 )
+            {
+                os.write( buffer, 0, n );
+            }
+            return os.toByteArray();
+        }
+        finally
+        {
+            is.close();
+        }
+    }
+
+    private URL jarEntryUrl( int urlIndex, String name )
+    {
+        try
+        {
+            return new URL( "jar:" + urls[urlIndex].toExternalForm() + "!/" + encodePath( name ) );
+        }
+        catch ( MalformedURLException e )
+        {
+            return null;
+        }
+    }
+
+    /**
+     * Percent-encodes reserved, excluded and non-ASCII characters of '/' separated path, so entry URLs
+     * are the same as URLs returned by {@link java.net.URLClassLoader} (every non-ASCII {@code char},
+     * including surrogates, is encoded separately as UTF-8 bytes).
+     */
+    private static String encodePath( String path )
+    {
+        StringBuilder result = null; // created on first character to encode
+        for ( int i = 0; i < path.length(); i++ )
+        {
+            char c = path.charAt( i );
+            if ( c >= 0x20 && c < 0x7F && ENCODED_PATH_CHARACTERS.indexOf( c ) < 0 )
+            {
+                if ( result != null )
+                {
+                    result.append( c );
+                }
+                continue;
+            }
+            if ( result == null )
+            {
+                result = new StringBuilder( path.length() + 16 );
+                result.append( path, 0, i );
+            }
+            if ( c < 0x80 )
+            {
+                appendEscaped( result, c );
+            }
+            else if ( c < 0x800 )
+            {
+                appendEscaped( result, 0xC0 | ( c >> 6 ) );
+                appendEscaped( result, 0x80 | ( c & 0x3F ) );
+            }
+            else
+            {
+                appendEscaped( result, 0xE0 | ( c >> 12 ) );
+                appendEscaped( result, 0x80 | ( ( c >> 6 ) & 0x3F ) );
+                appendEscaped( result, 0x80 | ( c & 0x3F ) );
+            }
+        }
+        return result != null ? result.toString() : path;
+    }
+
+    private static void appendEscaped( StringBuilder sb, int b )
+    {
+        sb.append( '%' ).append( HEX_DIGITS[b >> 4] ).append( HEX_DIGITS[b & 0x0F] );
+    }
+
+    private static Map<String, int[]> createIndex( URL[] urls, List<Integer> notIndexedUrlIndexes,
+                                                   Play2RunnerLogger logger )
+        throws IOException
+    {
+        final List<File> jarFiles = new ArrayList<File>( urls.length );
+        for ( URL url: urls )
+        {
+            File file = "file".equals( url.getProtocol() ) ? toFile( url ) : null;
+            if ( file == null || !file.isFile() )
+            {
+                return null; // not a jar file, indexing disabled
+            }
+            jarFiles.add( file );
+        }
+
+        List<Future<List<String>>> jarContents = new ArrayList<Future<List<String>>>( jarFiles.size() );
+        ExecutorService executor = Executors.newFixedThreadPool( Runtime.getRuntime().availableProcessors() );
+        try
+        {
+            for ( final File jarFile: jarFiles )
+            {
+                jarContents.add( executor.submit( new Callable<List<String>>()
+                {
+                    @Override
+                    public List<String> call()
+                        throws IOException
+                    {
+                        return listEntries( jarFile );
+                    }
+                } ) );
+            }
+
+            Map<String, int[]> result = new HashMap<String, int[]>();
+            for ( int i = 0; i < jarContents.size(); i++ ) // classpath order
+            {
+                List<String> entryNames;
+                try
+                {
+                    entryNames = jarContents.get( i ).get();
+                }
+                catch ( ExecutionException e )
+                {
+                    if ( logger != null )
+                    {
+                        logger.warn( "Cannot index \"" + jarFiles.get( i ).getPath() + "\" dependency: "
+                            + e.getCause().getMessage() + ", it will be searched without index" );
+                    }
+                    notIndexedUrlIndexes.add( Integer.valueOf( i ) );
+                    continue;
+                }
+                if ( entryNames == null )
+                {
+                    if ( logger != null && logger.isDebugEnabled() )
+                    {
+                        logger.debug( "\"" + jarFiles.get( i ).getPath() + "\" dependency is a multi-release jar"
+                            + " or has Class-Path manifest attribute, it will be searched without index" );
+                    }
+                    notIndexedUrlIndexes.add( Integer.valueOf( i ) );
+                    continue;
+                }
+                for ( String entryName: entryNames )
+                {
+                    int[] urlIndexes = result.get( entryName );
+                    if ( urlIndexes == null )
+                    {
+                        urlIndexes = new int[] { i };
+                    }
+                    else
+                    {
+                        urlIndexes = Arrays.copyOf( urlIndexes, urlIndexes.length + 1 );
+                        urlIndexes[urlIndexes.length - 1] = i;
+                    }
+                    result.put( entryName, urlIndexes );
+                }
+            }
+            return result;
+        }
+        catch ( InterruptedException e )
+        {
+            throw new IOException( "Dependency classpath indexing interrupted" );
+        }
+        finally
+        {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * Index file name contains hash of classpath elements paths, sizes and modification times.
+     */
+    private static String indexFileName( URL[] urls )
+    {
+        try
+        {
+            MessageDigest digest = MessageDigest.getInstance( "SHA-1" );
+            for ( URL url: urls )
+            {
+                File file = toFile( url );
+                String element = url.toExternalForm() + ( file != null ? ":" + file.length() + ":" + file.lastModified() : "" );
+                digest.update( element.getBytes( "UTF-8" ) );
+                digest.update( (byte) '\n' );
+            }
+            StringBuilder result = new StringBuilder( INDEX_FILE_NAME_PREFIX );
+            for ( byte b: digest.digest() )
+            {
+                result.append( Integer.toHexString( ( b & 0xff ) | 0x100 ).substring( 1 ) );
+            }
+            return result.append( ".gz" ).toString();
+        }
+        catch ( NoSuchAlgorithmException e )
+        {
+            throw new RuntimeException( e ); // SHA-1 is always available
+        }
+        catch ( UnsupportedEncodingException e )
+        {
+            throw new RuntimeException( e ); // UTF-8 is always available
+        }
+    }
+
+    private static Map<String, int[]> readIndex( File indexFile, List<Integer> notIndexedUrlIndexes )
+    {
+        try
+        {
+            DataInputStream is =
+                new DataInputStream( new BufferedInputStream( new GZIPInputStream( new FileInputStream( indexFile ) ) ) );
+            try
+            {
+                int size = is.readInt();
+                Map<String, int[]> result = new HashMap<String, int[]>( size * 4 / 3 + 1 );
+                for ( int i = 0; i < size; i++ )
+                {
+                    String name = is.readUTF();
+                    int[] urlIndexes = new int[is.readInt()];
+                    for ( int j = 0; j < urlIndexes.length; j++ )
+                    {
+                        urlIndexes[j] = is.readInt();
+                    }
+                    result.put( name, urlIndexes );
+                }
+                int notIndexedCount = is.readInt();
+                for ( int i = 0; i < notIndexedCount; i++ )
+                {
+                    notIndexedUrlIndexes.add( Integer.valueOf( is.readInt() ) );
+                }
+                return result;
+            }
+            finally
+            {
+                is.close();
+            }
+        }
+        catch ( IOException e )
+        {
+            return null; // corrupted, will be recreated
+        }
+    }
+
+    private static void writeIndex( File indexFile, Map<String, int[]> index, List<Integer> notIndexedUrlIndexes )
+    {
+        File tmpFile = new File( indexFile.getPath() + ".tmp" );
+        try
+        {
+            if ( !indexFile.getParentFile().isDirectory() && !indexFile.getParentFile().mkdirs() )
+            {
+                return;
+            }
+            DataOutputStream os =
+                new DataOutputStream( new BufferedOutputStream( new GZIPOutputStream( new FileOutputStream( tmpFile ) ) ) );
+            try
+            {
+                os.writeInt( index.size() );
+                for ( Map.Entry<String, int[]> entry: index.entrySet() )
+                {
+                    os.writeUTF( entry.getKey() );
+                    os.writeInt( entry.getValue().length );
+                    for ( int urlIndex: entry.getValue() )
+                    {
+                        os.writeInt( urlIndex );
+                    }
+                }
+                os.writeInt( notIndexedUrlIndexes.size() );
+                for ( Integer urlIndex: notIndexedUrlIndexes )
+                {
+                    os.writeInt( urlIndex.intValue() );
+                }
+            }
+            finally
+            {
+                os.close();
+            }
+            if ( !tmpFile.renameTo( indexFile ) )
+            {
+                tmpFile.delete();
+            }
+        }
+        catch ( IOException e )
+        {
+            tmpFile.delete(); // ignore, index will be created again next time
+        }
+    }
+
+    /**
+     * Index files of previous classpaths are never used again.
+     */
+    private static void deleteStaleIndexFiles( File indexFile )
+    {
+        File[] files = indexFile.getParentFile().listFiles();
+        if ( files != null )
+        {
+            for ( File file: files )
+            {
+                String name = file.getName();
+                if ( name.startsWith( INDEX_FILE_NAME_PREFIX ) && name.endsWith( ".gz" ) && !file.equals( indexFile ) )
+                {
+                    file.delete();
+                }
+            }
+        }
+    }
+
+    /**
+     * Lists jar entries.
+     *
+     * @return entry names or null if jar contents depend on Java version or on other jars
+     */
+    private static List<String> listEntries( File file )
+        throws IOException
+    {
+        List<String> result = new ArrayList<String>();
+        JarFile jarFile = new JarFile( file );
+        try
+        {
+            Manifest manifest = jarFile.getManifest();
+            if ( manifest != null )
+            {
+                Attributes attributes = manifest.getMainAttributes();
+                if ( "true".equalsIgnoreCase( attributes.getValue( "Multi-Release" ) )
+                    || attributes.getValue( Attributes.Name.CLASS_PATH ) != null )
+                {
+                    return null;
+                }
+            }
+            Enumeration<JarEntry> entries = jarFile.entries();
+            while ( entries.hasMoreElements() )
+            {
+                result.add( entries.nextElement().getName() );
+            }
+        }
+        finally
+        {
+            jarFile.close();
+        }
+        return result;
+    }
+
+    private static File toFile( URL url )
+    {
+        try
+        {
+            return new File( url.toURI() );
+        }
+        catch ( URISyntaxException e )
+        {
+            return null;
+        }
+        catch ( IllegalArgumentException e )
+        {
+            return null;
+        }
+    }
+
+}
@@ -0,0 +1,96 @@
+/*
+ * Copyright 2013-2020 Grzegorz Slowikowski (gslowikowski at gmail dot com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.google.code.play2.provider.play22.run;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.Vector;
+
+/**
+ * Top classloader of per-module classloaders chain. Finds resources in all the chain layers,
+ * because {@link play.runsupport.classloader.DelegatingClassLoader} looks for application resources
+ * in the top classloader only.
+ */
+public class LayeredDelegatedResourcesClassLoader
+    extends DelegatedResourcesClassLoader
+{
+    private List<DelegatedResourcesClassLoader> lowerLayers; // upstream modules first
+
+    public LayeredDelegatedResourcesClassLoader( String name, URL[] urls, ClassLoader parent, Map<String, File> index,
+                                                 String assetsPrefix, List<DelegatedResourcesClassLoader> lowerLayers )
+    {
+        super( name, urls, parent, index, assetsPrefix );
+        this.lowerLayers = lowerLayers;
+    }
+
+    @Override
+    public List<DelegatedResourcesClassLoader> getLayers()
+    {
+        List<DelegatedResourcesClassLoader> result = new ArrayList<DelegatedResourcesClassLoader>( lowerLayers );
+        result.add( this );
+        return result;
+    }
+
+    @Override
+    public Set<String> getLoadedClassNames()
+    {
+        Set<String> result = new HashSet<String>();
+        for ( DelegatedResourcesClassLoader layer: lowerLayers )
+        {
+            result.addAll( layer.getLoadedClassNames() );
+        }
+        result.addAll( super.getLoadedClassNames() );
+        return result;
+    }
+
+    @Override
+    public URL findResource( String name )
+    {
+        for ( DelegatedResourcesClassLoader layer: lowerLayers )
+        {
+            URL result = layer.findResource( name );
+            if ( result != null )
+            {
+                return result;
+            }
+        }
+        return super.findResource( name );
+    }
+
+    @Override
+    public Enumeration<URL> findResources( String name )
+        throws IOException
+    {
+        Vector<URL> result = new Vector<URL>();
+        for ( DelegatedResourcesClassLoader layer: lowerLayers )
+        {
+            result.addAll( Collections.list( layer.findResources( name ) ) );
+        }
+        result.addAll( Collections.list( super.findResources( name ) ) );
+        return result.elements();
+    }
+
+}
@@ -34,6 +34,11 @@ public class NamedURLClassLoader
         this.urls = urls; // for toString() only
     }
 
+    public String getClassLoaderName()
+    {
+        return name;
+    }
+
     public String toString()
     {
         StringBuilder sb = new StringBuilder();
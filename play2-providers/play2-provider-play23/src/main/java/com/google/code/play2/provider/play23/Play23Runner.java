@@ -36,6 +36,7 @@ import com.google.code.play2.provider.api.Play2Runner;
 import com.google.code.play2.provider.api.Play2RunnerConfiguration;
 
 import com.google.code.play2.provider.play23.run.AssetsClassLoader;
+import com.google.code.play2.provider.play23.run.IndexedURLClassLoader;
 import com.google.code.play2.provider.play23.run.NamedURLClassLoader;
 import com.google.code.play2.provider.play23.run.Reloader;
 import com.google.code.play2.provider.play23.run.ReloaderApplicationClassLoaderProvider;
@@ -72,16 +73,27 @@ public class Play23Runner
             new ReloaderApplicationClassLoaderProvider();
         ClassLoader delegatingLoader =
             new DelegatingClassLoader( commonClassLoader, buildLoader, applicationClassLoaderProvider );
-        ClassLoader applicationLoader =
-            new NamedURLClassLoader( "PlayDependencyClassLoader",
-                                     Reloader.toUrls( configuration.getDependencyClasspath() ), delegatingLoader );
+        URL[] dependencyUrls = Reloader.toUrls( configuration.getDependencyClasspath() );
+        IndexedURLClassLoader indexedApplicationLoader = null;
+        ClassLoader applicationLoader;
+        if ( configuration.isIndexedDependencyClasspath() )
+        {
+            indexedApplicationLoader =
+                new IndexedURLClassLoader( "PlayDependencyClassLoader", dependencyUrls, delegatingLoader,
+                                           configuration.getDependencyClasspathIndexDirectory(),
+                                           configuration.getLogger() );
+            applicationLoader = indexedApplicationLoader;
+        }
+        else
+        {
+            applicationLoader =
+                new NamedURLClassLoader( "PlayDependencyClassLoader", dependencyUrls, delegatingLoader );
+        }
         ClassLoader assetsLoader =
             new AssetsClassLoader( applicationLoader, configuration.getAssetsPrefix(),
-                                   configuration.getAssetsDirectory() );
+                                   configuration.getAssetsDirectory(), configuration.isIndexedAssets() );
 
-        Reloader reloader =
-            new Reloader( configuration.getBuildLink(), assetsLoader, configuration.getBaseDirectory(),
-                          configuration.getOutputDirectories(), configuration.getDevSettings() );
+        Reloader reloader = new Reloader( assetsLoader, configuration );
         applicationClassLoaderProvider.setReloader( reloader );
 
         ClassLoader docsLoader =
@@ -100,7 +112,7 @@ public class Play23Runner
         Method mainDev = mainClass.getMethod( mainMethod, BuildLink.class, BuildDocHandler.class, Integer.TYPE );
         ServerWithStop server = (ServerWithStop) mainDev.invoke( null, reloader, buildDocHandler, port );
 
-        return new ReloaderPlayDevServer( server, docsJarFile, reloader );
+        return new ReloaderPlayDevServer( server, docsJarFile, reloader, indexedApplicationLoader );
     }
 
     private ClassLoader commonClassLoader( List<File> classpath )
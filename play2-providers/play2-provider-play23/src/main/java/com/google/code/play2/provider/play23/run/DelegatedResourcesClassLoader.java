@@ -17,9 +17,21 @@
 
 package com.google.code.play2.provider.play23.run;
 
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.net.MalformedURLException;
 import java.net.URL;
+import java.security.CodeSource;
+import java.security.cert.Certificate;
+import java.util.Collections;
 import java.util.Enumeration;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * A ClassLoader that only uses resources from its parent
@@ -27,9 +39,30 @@ import java.util.Enumeration;
 public class DelegatedResourcesClassLoader
     extends NamedURLClassLoader
 {
+    private Map<String, File> index; // optional, path to file
+
+    private String assetsPrefix; // resources under this path are not included in the index
+
+    private Map<String, CodeSource> codeSources = new ConcurrentHashMap<String, CodeSource>();
+
+    private Set<String> loadedClassNames = Collections.newSetFromMap( new ConcurrentHashMap<String, Boolean>() );
+
     public DelegatedResourcesClassLoader( String name, URL[] urls, ClassLoader parent )
+    {
+        this( name, urls, parent, null, null );
+    }
+
+    /**
+     * Creates classloader finding classes and resources in given index instead of probing
+     * the directories. Classes and resources not found in the index are not searched for in the directories,
+     * except resources under assets prefix (not indexed) and directories.
+     */
+    public DelegatedResourcesClassLoader( String name, URL[] urls, ClassLoader parent, Map<String, File> index,
+                                          String assetsPrefix )
     {
         super( name, urls, parent );
+        this.index = index;
+        this.assetsPrefix = assetsPrefix;
     }
 
     @Override
@@ -39,4 +72,156 @@ public class DelegatedResourcesClassLoader
         return getParent().getResources( name );
     }
 
+    /**
+     * Returns classloaders of this application classloader generation.
+     */
+    public List<DelegatedResourcesClassLoader> getLayers()
+    {
+        return Collections.singletonList( this );
+    }
+
+    /**
+     * Returns names of classes loaded by this classloader, used to preload them in the next
+     * application classloader generation.
+     */
+    public Set<String> getLoadedClassNames()
+    {
+        return loadedClassNames;
+    }
+
+    /**
+     * Returns class defined by this classloader, or null if it was not loaded yet.
+     */
+    public Class<?> getLoadedClass( String name )
+    {
+        return findLoadedClass( name );
+    }
+
+    @Override
+    protected Class<?> findClass( String name )
+        throws ClassNotFoundException
+    {
+        Class<?> result = index != null ? findIndexedClass( name ) : super.findClass( name );
+        loadedClassNames.add( name );
+        return result;
+    }
+
+    private Class<?> findIndexedClass( String name )
+        throws ClassNotFoundException
+    {
+
+        String path = name.replace( '.', '/' ).concat( ".class" );
+        File classFile = index.get( path );
+        if ( classFile == null )
+        {
+            throw new ClassNotFoundException( name );
+        }
+        try
+        {
+            byte[] bytes = readFile( classFile );
+            definePackageFor( name );
+            return defineClass( name, bytes, 0, bytes.length, getCodeSource( classFile, path ) );
+        }
+        catch ( IOException e )
+        {
+            throw new ClassNotFoundException( name, e );
+        }
+    }
+
+    @Override
+    public URL findResource( String name )
+    {
+        if ( isIndexed( name ) )
+        {
+            File resourceFile = index.get( name );
+            if ( resourceFile == null )
+            {
+                return null; // not in the directories
+            }
+            try
+            {
+                return resourceFile.toURI().toURL();
+            }
+            catch ( MalformedURLException e )
+            {
+                // ignore, fall back to directories search
+            }
+        }
+        return super.findResource( name ); // not indexed (assets or directory) or no index
+    }
+
+    @Override
+    public Enumeration<URL> findResources( String name )
+        throws IOException
+    {
+        if ( isIndexed( name ) )
+        {
+            URL resource = findResource( name ); // index contains the first of files with the same path only
+            List<URL> result = resource != null ? Collections.singletonList( resource ) : Collections.<URL>emptyList();
+            return Collections.enumeration( result );
+        }
+        return super.findResources( name );
+    }
+
+    private boolean isIndexed( String resourceName )
+    {
+        return index != null && assetsPrefix != null && !resourceName.startsWith( assetsPrefix )
+            && !resourceName.endsWith( "/" );
+    }
+
+    private void definePackageFor( String className )
+    {
+        int i = className.lastIndexOf( '.' );
+        if ( i > 0 )
+        {
+            String packageName = className.substring( 0, i );
+            if ( getPackage( packageName ) == null )
+            {
+                try
+                {
+                    definePackage( packageName, null, null, null, null, null, null, null );
+                }
+                catch ( IllegalArgumentException e )
+                {
+                    // defined concurrently
+                }
+            }
+        }
+    }
+
+    private CodeSource getCodeSource( File classFile, String path )
+        throws MalformedURLException
+    {
+        String filePath = classFile.getPath();
+        String directoryPath = filePath.substring( 0, filePath.length() - path.length() );
+        CodeSource result = codeSources.get( directoryPath );
+        if ( result == null )
+        {
+            result = new CodeSource( new File( directoryPath ).toURI().toURL(), (Certificate[]) null );
+            codeSources.put( directoryPath, result );
+        }
+        return result;
+    }
+
+    static byte[] readFile( File file )
+        throws IOException
+    {
+        InputStream is = new FileInputStream( file );
+        try
+        {
+            ByteArrayOutputStream os = new ByteArrayOutputStream( (int) file.length() );
+            byte[] buffer = new byte[8192];
+            int n;
+            while ( ( n = is.read( buffer ) ) != -1 )
+            {
+                os.write( buffer, 0, n );
+            }
+            return os.toByteArray();
+        }
+        finally
+        {
+            is.close();
+        }
+    }
+
 }
@@ -31,13 +31,17 @@ public class ReloaderPlayDevServer
 
     private JarFile docsJarFile; // optional
 
+    private IndexedURLClassLoader dependencyClassLoader; // optional
+
     private Reloader reloader;
 
-    public ReloaderPlayDevServer( ServerWithStop server, JarFile docsJarFile, Reloader reloader )
+    public ReloaderPlayDevServer( ServerWithStop server, JarFile docsJarFile, Reloader reloader,
+                                  IndexedURLClassLoader dependencyClassLoader )
     {
         this.server = server;
         this.docsJarFile = docsJarFile;
         this.reloader = reloader;
+        this.dependencyClassLoader = dependencyClassLoader;
     }
 
     @Override
@@ -50,6 +54,10 @@ public class ReloaderPlayDevServer
             docsJarFile.close();
         }
         reloader.close();
+        if ( dependencyClassLoader != null )
+        {
+            dependencyClassLoader.close();
+        }
     }
 
 }
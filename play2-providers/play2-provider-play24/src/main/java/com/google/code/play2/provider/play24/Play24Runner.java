@@ -36,6 +36,7 @@ import com.google.code.play2.provider.api.Play2Runner;
 import com.google.code.play2.provider.api.Play2RunnerConfiguration;
 
 import com.google.code.play2.provider.play24.run.AssetsClassLoader;
+import com.google.code.play2.provider.play24.run.IndexedURLClassLoader;
 import com.google.code.play2.provider.play24.run.NamedURLClassLoader;
 import com.google.code.play2.provider.play24.run.Reloader;
 import com.google.code.play2.provider.play24.run.ReloaderApplicationClassLoaderProvider;
@@ -78,16 +79,27 @@ public class Play24Runner
         ClassLoader delegatingLoader =
             new DelegatingClassLoader( commonClassLoader, Build.sharedClasses, buildLoader,
                                        applicationClassLoaderProvider );
-        ClassLoader applicationLoader =
-            new NamedURLClassLoader( "PlayDependencyClassLoader",
-                                     Reloader.toUrls( configuration.getDependencyClasspath() ), delegatingLoader );
+        URL[] dependencyUrls = Reloader.toUrls( configuration.getDependencyClasspath() );
+        IndexedURLClassLoader indexedApplicationLoader = null;
+        ClassLoader applicationLoader;
+        if ( configuration.isIndexedDependencyClasspath() )
+        {
+            indexedApplicationLoader =
+                new IndexedURLClassLoader( "PlayDependencyClassLoader", dependencyUrls, delegatingLoader,
+                                           configuration.getDependencyClasspathIndexDirectory(),
+                                           configuration.getLogger() );
+            applicationLoader = indexedApplicationLoader;
+        }
+        else
+        {
+            applicationLoader =
+                new NamedURLClassLoader( "PlayDependencyClassLoader", dependencyUrls, delegatingLoader );
+        }
         ClassLoader assetsLoader =
             new AssetsClassLoader( applicationLoader, configuration.getAssetsPrefix(),
-                                   configuration.getAssetsDirectory() );
+                                   configuration.getAssetsDirectory(), configuration.isIndexedAssets() );
 
-        Reloader reloader =
-            new Reloader( configuration.getBuildLink(), assetsLoader, configuration.getBaseDirectory(),
-                          configuration.getOutputDirectories(), configuration.getDevSettings() );
+        Reloader reloader = new Reloader( assetsLoader, configuration );
         applicationClassLoaderProvider.setReloader( reloader );
 
         ClassLoader docsLoader =
@@ -116,7 +128,7 @@ public class Play24Runner
             mainClass.getMethod( mainMethod, BuildLink.class, BuildDocHandler.class, Integer.TYPE, String.class );
         ServerWithStop server = (ServerWithStop) mainDev.invoke( null, reloader, buildDocHandler, port, httpAddress );
 
-        return new ReloaderPlayDevServer( server, docsJarFile, reloader );
+        return new ReloaderPlayDevServer( server, docsJarFile, reloader, indexedApplicationLoader );
     }
 
     private ClassLoader commonClassLoader( List<File> classpath )
@@ -20,17 +20,32 @@ package com.google.code.play2.provider.play24.run;
 import java.io.File;
 import java.net.MalformedURLException;
 import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import play.core.BuildLink;
 
 import com.google.code.play2.provider.api.Play2Builder;
 import com.google.code.play2.provider.api.Play2BuildError;
 import com.google.code.play2.provider.api.Play2BuildFailure;
+import com.google.code.play2.provider.api.Play2RunnerConfiguration;
+import com.google.code.play2.provider.api.Play2RunnerLogger;
 
 public class Reloader implements BuildLink
 {
+    private static final int PRELOAD_THREADS = 4;
+
     private Play2Builder buildLink;
 
     private ClassLoader baseLoader;
@@ -43,16 +58,66 @@ public class Reloader implements BuildLink
 
     private volatile ClassLoader currentApplicationClassLoader = null;
 
+    private boolean serveStaleWhileRebuilding;
+
+    private boolean layeredClassLoaders;
+
+    private boolean indexedClassLoaders;
+
+    private String assetsPrefix; // not included in output indexes
+
+    private boolean preloadClasses;
+
+    private boolean initializePreloadedClasses;
+
+    private boolean keepClassLoaderOnResourceChanges;
+
+    // Per-module classloaders (all but the last module), used in layered classloaders mode only
+    private List<DelegatedResourcesClassLoader> currentLowerLayers = null;
+
+    private Play2RunnerLogger logger;
+
+    private ClassLoaderGenerationsTracker generationsTracker;
+
+    private ClassRedefiner classRedefiner = null; // hot swap enabled only if instrumentation is available
+
+    private ExecutorService backgroundReloadExecutor = null; // created on first background reload
+
+    private ExecutorService preloadExecutor = null; // created on first preload
+
+    // Background rebuild started by "serve stale" mode, result not consumed yet
+    private volatile Future<Object> pendingReload = null;
+
+    private long pendingReloadChangesCount; // guarded by this, builder's changes count when pendingReload started
+
+    // Failed background rebuild result, returned until files change again (guarded by this)
+    private Object failedReloadResult = null;
+
+    private long failedReloadChangesCount; // guarded by this
+
     private int classLoaderVersion = 0;
 
-    public Reloader( Play2Builder buildLink, ClassLoader baseLoader, File projectPath, List<File> outputDirectories,
-                     Map<String, String> devSettings )
+    public Reloader( ClassLoader baseLoader, Play2RunnerConfiguration configuration )
     {
-        this.buildLink = buildLink;
+        this.buildLink = configuration.getBuildLink();
         this.baseLoader = baseLoader;
-        this.projectPath = projectPath;
-        this.outputDirectories = outputDirectories;
-        this.devSettings = devSettings;
+        this.projectPath = configuration.getBaseDirectory();
+        this.outputDirectories = configuration.getOutputDirectories();
+        this.devSettings = configuration.getDevSettings();
+        this.serveStaleWhileRebuilding = configuration.isServeStaleWhileRebuilding();
+        this.layeredClassLoaders = configuration.isLayeredClassLoaders();
+        this.indexedClassLoaders = configuration.isIndexedClassLoaders();
+        this.assetsPrefix = configuration.getAssetsPrefix();
+        this.preloadClasses = configuration.isPreloadClasses();
+        this.initializePreloadedClasses = configuration.isInitializePreloadedClasses();
+        this.keepClassLoaderOnResourceChanges = configuration.isKeepClassLoaderOnResourceChanges();
+        this.logger = configuration.getLogger();
+        this.generationsTracker = new ClassLoaderGenerationsTracker( logger );
+        if ( configuration.getInstrumentation() != null )
+        {
+            this.classRedefiner =
+                new ClassRedefiner( configuration.getInstrumentation(), outputDirectories, logger );
+        }
     }
 
     /**
@@ -68,20 +133,136 @@ public class Reloader implements BuildLink
      * - null - If nothing changed.
      */
     @Override /* BuildLink interface */
-    public synchronized Object reload()
+    public Object reload()
+    {
+        if ( pendingReload == null && !buildLink.isBuildRequired() )
+        {
+            return null; // nothing changed, no need to lock
+        }
+
+        synchronized ( this )
+        {
+            if ( serveStaleWhileRebuilding && currentApplicationClassLoader != null )
+            {
+                return reloadInBackground();
+            }
+            return switchClassLoader( buildAndCreateClassLoader() );
+        }
+    }
+
+    /**
+     * Starts rebuild in the background and returns null (the current application serves requests)
+     * until the rebuild finishes. Its result is returned to the first request received after that.
+     */
+    // must be called inside "synchronized ( this )" block
+    private Object reloadInBackground()
+    {
+        if ( pendingReload == null )
+        {
+            if ( failedReloadResult != null )
+            {
+                if ( buildLink.getChangesCount() == failedReloadChangesCount )
+                {
+                    return failedReloadResult; // nothing changed, rebuild would fail again
+                }
+                failedReloadResult = null;
+            }
+            if ( !buildLink.isBuildRequired() )
+            {
+                return null; // changes already built for another request
+            }
+            pendingReloadChangesCount = buildLink.getChangesCount();
+            pendingReload = getBackgroundReloadExecutor().submit( new Callable<Object>()
+            {
+                @Override
+                public Object call()
+                {
+                    return buildAndCreateClassLoader();
+                }
+            } );
+            logInfo( "Rebuilding in the background, requests served by " + currentApplicationClassLoader );
+        }
+
+        if ( !pendingReload.isDone() )
+        {
+            if ( logger != null && logger.isDebugEnabled() )
+            {
+                logger.debug( "Rebuild in progress, request served by " + currentApplicationClassLoader );
+            }
+            return null;
+        }
+
+        Future<Object> finishedReload = pendingReload;
+        pendingReload = null;
+        try
+        {
+            Object result = switchClassLoader( finishedReload.get() );
+            if ( result instanceof ClassLoader )
+            {
+                logInfo( "Rebuild finished, requests served by " + result );
+            }
+            else if ( result instanceof Throwable )
+            {
+                failedReloadResult = result;
+                failedReloadChangesCount = pendingReloadChangesCount;
+            }
+            return result;
+        }
+        catch ( InterruptedException e )
+        {
+            throw new UnexpectedException( "Unexpected reloader exception", e ); //??
+        }
+        catch ( ExecutionException e )
+        {
+            Throwable cause = e.getCause();
+            if ( cause instanceof RuntimeException )
+            {
+                throw (RuntimeException) cause;
+            }
+            throw new UnexpectedException( "Unexpected reloader exception", cause ); //??
+        }
+    }
+
+    /**
+     * Builds the project.
+     *
+     * @return new application classloader if the application should be reloaded, compilation error
+     * or null if nothing changed
+     */
+    private Object buildAndCreateClassLoader()
     {
         Object result = null;
         try
         {
             boolean reloadRequired = buildLink.build();
+            if ( baseLoader instanceof AssetsClassLoader )
+            {
+                ( (AssetsClassLoader) baseLoader ).invalidateIndex(); // assets could be changed by the build
+            }
 
             if ( reloadRequired )
             {
-                int version = ++classLoaderVersion;
-                String name = "ReloadableClassLoader(v" + version + ")";
-                currentApplicationClassLoader =
-                    new DelegatedResourcesClassLoader( name, toUrls( outputDirectories ), baseLoader );
-                result = currentApplicationClassLoader;
+                Set<File> changedOutputFiles = consumeChangedOutputFiles();
+                if ( updateCurrentClassLoader( changedOutputFiles ) )
+                {
+                    // application is restarted with the current classloader if resources changed
+                    result = containsResources( changedOutputFiles ) ? currentApplicationClassLoader : null;
+                }
+                else
+                {
+                    int version = ++classLoaderVersion;
+                    String name = "ReloadableClassLoader(v" + version + ")";
+                    if ( layeredClassLoaders && outputDirectories.size() > 1 )
+                    {
+                        result = createLayeredClassLoader( name, buildLink.consumeChangedOutputDirectories() );
+                    }
+                    else
+                    {
+                        result =
+                            new DelegatedResourcesClassLoader( name, toUrls( outputDirectories ), baseLoader,
+                                                               getOutputIndex( outputDirectories ), assetsPrefix );
+                    }
+                }
             }
         }
         catch ( MalformedURLException e )
@@ -98,9 +279,294 @@ public class Reloader implements BuildLink
         {
             result = new UnexpectedException( e.getMessage(), e.getCause() ); //??
         }
+
+        if ( preloadClasses && result instanceof DelegatedResourcesClassLoader
+            && currentApplicationClassLoader instanceof DelegatedResourcesClassLoader
+            && result != currentApplicationClassLoader )
+        {
+            Set<String> classNames =
+                ( (DelegatedResourcesClassLoader) currentApplicationClassLoader ).getLoadedClassNames();
+            preload( classNames, (DelegatedResourcesClassLoader) result, initializePreloadedClasses );
+        }
+
         return result;
     }
 
+    /**
+     * Loads classes used by the previous application classloader generation in the new one,
+     * so the first request after reload does not wait for them.
+     *
+     * @param initialize whether generated templates and routes classes should be initialized
+     */
+    private void preload( Set<String> classNames, ClassLoader classLoader, boolean initialize )
+    {
+        long start = System.currentTimeMillis();
+        List<Callable<Object>> tasks = new ArrayList<Callable<Object>>( classNames.size() );
+        for ( String className: classNames )
+        {
+            tasks.add( Executors.callable( new ClassPreloader( className, classLoader, initialize ) ) );
+        }
+        try
+        {
+            getPreloadExecutor().invokeAll( tasks );
+        }
+        catch ( InterruptedException e )
+        {
+            Thread.currentThread().interrupt();
+        }
+        if ( logger != null && logger.isDebugEnabled() )
+        {
+            logger.debug( "Preloaded " + classNames.size() + " classes in " + classLoader + " in "
+                + ( System.currentTimeMillis() - start ) + " ms" );
+        }
+    }
+
+    private class ClassPreloader
+        implements Runnable
+    {
+        private String className;
+
+        private ClassLoader classLoader;
+
+        private boolean allowInitialization;
+
+        ClassPreloader( String className, ClassLoader classLoader, boolean allowInitialization )
+        {
+            this.className = className;
+            this.classLoader = classLoader;
+            this.allowInitialization = allowInitialization;
+        }
+
+        @Override
+        public void run()
+        {
+            // only generated templates and routes are known to have no side effects of initialization
+            boolean initialize =
+                allowInitialization && ( className.startsWith( "views." ) || className.startsWith( "router." ) );
+            try
+            {
+                Class.forName( className, initialize, classLoader );
+            }
+            catch ( ClassNotFoundException e )
+            {
+                // ignore, class removed
+            }
+            catch ( LinkageError e )
+            {
+                // ignore, application will get the same error when using the class
+            }
+        }
+    }
+
+    /**
+     * Creates chain of per-module classloaders in reactor order. Existing classloaders of modules
+     * preceding the first changed module are reused.
+     */
+    private DelegatedResourcesClassLoader createLayeredClassLoader( String name, Set<File> changedOutputDirectories )
+        throws MalformedURLException
+    {
+        int lastIndex = outputDirectories.size() - 1;
+        List<DelegatedResourcesClassLoader> lowerLayers = new ArrayList<DelegatedResourcesClassLoader>( lastIndex );
+        ClassLoader parent = baseLoader;
+        boolean recreate = currentLowerLayers == null;
+        for ( int i = 0; i < lastIndex; i++ )
+        {
+            File outputDirectory = outputDirectories.get( i );
+            recreate = recreate || changedOutputDirectories.contains( outputDirectory );
+            DelegatedResourcesClassLoader layer;
+            if ( recreate )
+            {
+                List<File> layerOutputDirectories = Collections.singletonList( outputDirectory );
+                layer =
+                    new DelegatedResourcesClassLoader( name, toUrls( layerOutputDirectories ), parent,
+                                                       getOutputIndex( layerOutputDirectories ), assetsPrefix );
+            }
+            else
+            {
+                layer = currentLowerLayers.get( i );
+            }
+            lowerLayers.add( layer );
+            parent = layer;
+        }
+        currentLowerLayers = lowerLayers;
+        List<File> topOutputDirectories = Collections.singletonList( outputDirectories.get( lastIndex ) );
+        return new LayeredDelegatedResourcesClassLoader( name, toUrls( topOutputDirectories ), parent,
+                                                         getOutputIndex( topOutputDirectories ), assetsPrefix,
+                                                         lowerLayers );
+    }
+
+    private Map<String, File> getOutputIndex( List<File> classLoaderOutputDirectories )
+    {
+        return indexedClassLoaders ? buildLink.getOutputIndex( classLoaderOutputDirectories ) : null;
+    }
+
+    /**
+     * Returns output files modified since the previous call, if changes can be applied to the current
+     * application classloader generation (hot swap or keeping classloader on resource changes enabled).
+     */
+    private Set<File> consumeChangedOutputFiles()
+    {
+        return classRedefiner != null || keepClassLoaderOnResourceChanges ? buildLink.consumeChangedOutputFiles()
+                        : null;
+    }
+
+    /**
+     * Applies changes to the current application classloader generation. Changed classes are redefined
+     * (if hot swap is enabled), changed resources are read by the current classloader without any action.
+     *
+     * @param changedOutputFiles modified output files, null if files were added or removed
+     * @return true if the current classloader generation is up to date and new one is not required
+     */
+    private boolean updateCurrentClassLoader( Set<File> changedOutputFiles )
+    {
+        if ( changedOutputFiles == null || changedOutputFiles.isEmpty()
+            || !( currentApplicationClassLoader instanceof DelegatedResourcesClassLoader ) )
+        {
+            return false;
+        }
+        Set<File> changedClassFiles = new HashSet<File>( changedOutputFiles.size() );
+        for ( File file: changedOutputFiles )
+        {
+            if ( file.getName().endsWith( ".class" ) )
+            {
+                changedClassFiles.add( file );
+            }
+        }
+        if ( changedClassFiles.size() < changedOutputFiles.size() && !keepClassLoaderOnResourceChanges )
+        {
+            return false;
+        }
+        if ( !changedClassFiles.isEmpty() )
+        {
+            DelegatedResourcesClassLoader classLoader = (DelegatedResourcesClassLoader) currentApplicationClassLoader;
+            if ( classRedefiner == null || !classRedefiner.redefine( changedClassFiles, classLoader ) )
+            {
+                return false;
+            }
+        }
+        buildLink.consumeChangedOutputDirectories(); // current classloaders are up to date
+        return true;
+    }
+
+    private static boolean containsResources( Set<File> changedOutputFiles )
+    {
+        for ( File file: changedOutputFiles )
+        {
+            if ( !file.getName().endsWith( ".class" ) )
+            {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private Object switchClassLoader( Object reloadResult )
+    {
+        if ( reloadResult instanceof ClassLoader && reloadResult != currentApplicationClassLoader )
+        {
+            ClassLoader retiredClassLoader = currentApplicationClassLoader;
+            currentApplicationClassLoader = (ClassLoader) reloadResult;
+            generationsTracker.generationSwitched( retiredClassLoader, currentApplicationClassLoader );
+            if ( serveStaleWhileRebuilding )
+            {
+                loadAllClassesInBackground( currentApplicationClassLoader );
+            }
+        }
+        return reloadResult;
+    }
+
+    /**
+     * Loads all classes of new application classloader generation. In "serve stale" mode it serves requests
+     * while next rebuild rewrites output directories, it must not read class files from them then (it could get
+     * a mix of old and new class versions or partially written class file). Background rebuilds are executed
+     * by the same single thread executor, so they start after all the classes are loaded.
+     */
+    // must be called inside "synchronized ( this )" block
+    private void loadAllClassesInBackground( final ClassLoader classLoader )
+    {
+        getBackgroundReloadExecutor().submit( new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                Set<String> classNames = new HashSet<String>();
+                for ( File outputDirectory: outputDirectories )
+                {
+                    collectClassNames( outputDirectory, "", classNames );
+                }
+                preload( classNames, classLoader, false );
+            }
+        } );
+    }
+
+    private static void collectClassNames( File directory, String packagePrefix, Set<String> result )
+    {
+        File[] files = directory.listFiles();
+        if ( files == null )
+        {
+            return;
+        }
+        for ( File file: files )
+        {
+            String name = file.getName();
+            if ( file.isDirectory() )
+            {
+                collectClassNames( file, packagePrefix + name + ".", result );
+            }
+            else if ( name.endsWith( ".class" ) && name.indexOf( '-' ) < 0 ) // skip "module-info" and "package-info"
+            {
+                result.add( packagePrefix + name.substring( 0, name.length() - ".class".length() ) );
+            }
+        }
+    }
+
+    private synchronized ExecutorService getBackgroundReloadExecutor()
+    {
+        if ( backgroundReloadExecutor == null )
+        {
+            backgroundReloadExecutor = Executors.newSingleThreadExecutor( new ThreadFactory()
+            {
+                @Override
+                public Thread newThread( Runnable r )
+                {
+                    Thread thread = new Thread( r, "play2-background-reload" );
+                    thread.setDaemon( true );
+                    return thread;
+                }
+            } );
+        }
+        return backgroundReloadExecutor;
+    }
+
+    private synchronized ExecutorService getPreloadExecutor()
+    {
+        if ( preloadExecutor == null )
+        {
+            int threads = Math.min( PRELOAD_THREADS, Runtime.getRuntime().availableProcessors() );
+            preloadExecutor = Executors.newFixedThreadPool( threads, new ThreadFactory()
+            {
+                private AtomicInteger threadNumber = new AtomicInteger();
+
+                @Override
+                public Thread newThread( Runnable r )
+                {
+                    Thread thread = new Thread( r, "play2-preload-" + threadNumber.incrementAndGet() );
+                    thread.setDaemon( true );
+                    return thread;
+                }
+            } );
+        }
+        return preloadExecutor;
+    }
+
+    private void logInfo( String message )
+    {
+        if ( logger != null )
+        {
+            logger.info( message );
+        }
+    }
+
     @Override /* BuildLink interface */
     public Map<String, String> settings()
     {
@@ -110,6 +576,10 @@ public class Reloader implements BuildLink
     @Override /* BuildLink interface */
     public void forceReload()
     {
+        synchronized ( this )
+        {
+            failedReloadResult = null;
+        }
         buildLink.forceReload();
     }
 
@@ -133,6 +603,17 @@ public class Reloader implements BuildLink
 
     void close()
     {
+        synchronized ( this )
+        {
+            if ( backgroundReloadExecutor != null )
+            {
+                backgroundReloadExecutor.shutdownNow();
+            }
+            if ( preloadExecutor != null )
+            {
+                preloadExecutor.shutdownNow();
+            }
+        }
         currentApplicationClassLoader = null;
     }
 
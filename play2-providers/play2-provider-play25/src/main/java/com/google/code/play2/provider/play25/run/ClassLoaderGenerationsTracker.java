@@ -0,0 +1,221 @@
+/*
+ * Copyright 2013-2020 Grzegorz Slowikowski (gslowikowski at gmail dot com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.google.code.play2.provider.play25.run;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.google.code.play2.provider.api.Play2RunnerLogger;
+
+/**
+ * Tracks retired application classloader generations.
+ * <br>
+ * <br>
+ * Retired classloaders are closed on the next reload, when the application using them is already stopped.
+ * Retired generations are referenced weakly, a warning is logged if a generation is still not garbage
+ * collected several reloads after retirement and garbage collection was executed since its retirement.
+ */
+public class ClassLoaderGenerationsTracker
+{
+    private static final int LEAK_WARNING_RELOADS = 5;
+
+    private Play2RunnerLogger logger;
+
+    private int reloads = 0;
+
+    private List<DelegatedResourcesClassLoader> classLoadersToClose = Collections.emptyList();
+
+    private ReferenceQueue<ClassLoader> collectedGenerations = new ReferenceQueue<ClassLoader>();
+
+    // retired, not collected yet generations and reloads count at their retirement
+    private Map<Reference<ClassLoader>, RetiredGeneration> retiredGenerations =
+        new HashMap<Reference<ClassLoader>, RetiredGeneration>();
+
+    public ClassLoaderGenerationsTracker( Play2RunnerLogger logger )
+    {
+        this.logger = logger;
+    }
+
+    public synchronized void generationSwitched( ClassLoader retired, ClassLoader current )
+    {
+        if ( retired == null )
+        {
+            return; // first generation
+        }
+        reloads++;
+
+        for ( DelegatedResourcesClassLoader classLoader: classLoadersToClose )
+        {
+            close( classLoader );
+        }
+        // layers shared with the current generation must stay open
+        classLoadersToClose = layersOf( retired );
+        classLoadersToClose.removeAll( layersOf( current ) );
+
+        retiredGenerations.put( new WeakReference<ClassLoader>( retired, collectedGenerations ),
+                                new RetiredGeneration( nameOf( retired ), reloads, getCollectionCount() ) );
+
+        Reference<? extends ClassLoader> collected;
+        while ( ( collected = collectedGenerations.poll() ) != null )
+        {
+            retiredGenerations.remove( collected );
+        }
+
+        long collectionCount = getCollectionCount();
+        for ( Map.Entry<Reference<ClassLoader>, RetiredGeneration> entry: retiredGenerations.entrySet() )
+        {
+            RetiredGeneration generation = entry.getValue();
+            ClassLoader classLoader = entry.getKey().get();
+            // without garbage collection since retirement a not collected generation does not indicate a leak
+            if ( classLoader != null && !generation.reported
+                && reloads - generation.retiredAt >= LEAK_WARNING_RELOADS
+                && collectionCount > generation.collectionCountAtRetirement )
+            {
+                generation.reported = true;
+                warnAboutLeak( generation, classLoader );
+            }
+        }
+
+        if ( logger != null && logger.isDebugEnabled() )
+        {
+            logger.debug( "Application classloader generations: current " + nameOf( current ) + ", retired not collected "
+                + retiredGenerations.size() + ", metaspace used " + getMetaspaceUsed() / 1024L + " KB" );
+        }
+    }
+
+    private void warnAboutLeak( RetiredGeneration generation, ClassLoader classLoader )
+    {
+        if ( logger == null )
+        {
+            return;
+        }
+        StringBuilder message = new StringBuilder();
+        message.append( generation.name ).append( " not garbage collected " )
+            .append( reloads - generation.retiredAt ).append( " reloads after retirement, possible classloader leak" );
+        List<String> threadNames = new ArrayList<String>();
+        for ( Thread thread: Thread.getAllStackTraces().keySet() )
+        {
+            ClassLoader contextClassLoader = thread.getContextClassLoader();
+            if ( contextClassLoader != null && layersOf( classLoader ).contains( contextClassLoader ) )
+            {
+                threadNames.add( thread.getName() );
+            }
+        }
+        if ( !threadNames.isEmpty() )
+        {
+            message.append( ", referenced as context classloader of threads: " ).append( threadNames );
+        }
+        logger.warn( message.toString() );
+    }
+
+    private static String nameOf( ClassLoader classLoader )
+    {
+        return classLoader instanceof NamedURLClassLoader ? ( (NamedURLClassLoader) classLoader ).getClassLoaderName()
+                        : String.valueOf( classLoader );
+    }
+
+    private static List<DelegatedResourcesClassLoader> layersOf( ClassLoader classLoader )
+    {
+        List<DelegatedResourcesClassLoader> result = new ArrayList<DelegatedResourcesClassLoader>();
+        if ( classLoader instanceof DelegatedResourcesClassLoader )
+        {
+            result.addAll( ( (DelegatedResourcesClassLoader) classLoader ).getLayers() );
+        }
+        return result;
+    }
+
+    private void close( ClassLoader classLoader )
+    {
+        if ( classLoader instanceof Closeable ) // Java 7+
+        {
+            try
+            {
+                ( (Closeable) classLoader ).close();
+            }
+            catch ( IOException e )
+            {
+                if ( logger != null )
+                {
+                    logger.debug( e );
+                }
+            }
+        }
+    }
+
+    // total number of garbage collections, -1 if not available
+    private static long getCollectionCount()
+    {
+        long result = 0L;
+        for ( GarbageCollectorMXBean collector: ManagementFactory.getGarbageCollectorMXBeans() )
+        {
+            long count = collector.getCollectionCount();
+            if ( count < 0L )
+            {
+                return -1L; // undefined for this collector
+            }
+            result += count;
+        }
+        return result;
+    }
+
+    private static long getMetaspaceUsed()
+    {
+        long result = 0L;
+        for ( MemoryPoolMXBean pool: ManagementFactory.getMemoryPoolMXBeans() )
+        {
+            String name = pool.getName();
+            if ( pool.getType() == MemoryType.NON_HEAP
+                && ( name.contains( "Metaspace" ) || name.contains( "Perm Gen" ) ) )
+            {
+                result += pool.getUsage().getUsed();
+            }
+        }
+        return result;
+    }
+
+    private static class RetiredGeneration
+    {
+        private String name;
+
+        private int retiredAt;
+
+        private long collectionCountAtRetirement;
+
+        private boolean reported = false;
+
+        RetiredGeneration( String name, int retiredAt, long collectionCountAtRetirement )
+        {
+            this.name = name;
+            this.retiredAt = retiredAt;
+            this.collectionCountAtRetirement = collectionCountAtRetirement;
+        }
+    }
+
+}
@@ -20,6 +20,8 @@ package com.google.code.play2.provider.play26.run;
 import java.io.File;
 import java.net.MalformedURLException;
 import java.net.URL;
+import java.util.HashMap;
+import java.util.Map;
 
 /**
  * A class loader for serving assets.
@@ -31,6 +33,10 @@ public class AssetsClassLoader
 {
     private String prefix;
     private File directory;
+    private boolean indexed;
+
+    // relative path to URL, created on first lookup after invalidation
+    private volatile Map<String, URL> index = null;
 
     /**
      * Creates assets class loader.
@@ -40,17 +46,47 @@ public class AssetsClassLoader
      * @param directory assets directory.
      */
     public AssetsClassLoader( ClassLoader parent, String prefix, File directory )
+    {
+        this( parent, prefix, directory, false );
+    }
+
+    /**
+     * Creates assets class loader.
+     * 
+     * @param parent parent class loader.
+     * @param prefix assets urls prefix.
+     * @param directory assets directory.
+     * @param indexed whether assets should be looked up in directory contents index,
+     *                the index must be invalidated after assets directory contents changes.
+     */
+    public AssetsClassLoader( ClassLoader parent, String prefix, File directory, boolean indexed )
     {
         super( parent );
         this.prefix = prefix;
         this.directory = directory;
+        this.indexed = indexed;
+    }
+
+    /**
+     * Invalidates assets directory contents index, it will be recreated on next lookup.
+     */
+    public void invalidateIndex()
+    {
+        index = null;
     }
 
     @Override /* ClassLoader */
     public URL findResource( String name )
     {
         URL result = null;
-        if ( name.startsWith( prefix ) && new File( directory, name.substring( prefix.length() ) ).isFile() )
+        if ( indexed )
+        {
+            if ( name.startsWith( prefix ) )
+            {
+                result = getIndex().get( name.substring( prefix.length() ) );
+            }
+        }
+        else if ( name.startsWith( prefix ) && new File( directory, name.substring( prefix.length() ) ).isFile() )
         {
             try
             {
@@ -65,4 +101,50 @@ public class AssetsClassLoader
         return result;
     }
 
+    private Map<String, URL> getIndex()
+    {
+        Map<String, URL> result = index;
+        if ( result == null )
+        {
+            synchronized ( this )
+            {
+                result = index;
+                if ( result == null )
+                {
+                    result = new HashMap<String, URL>();
+                    indexDirectory( directory, "", result );
+                    index = result;
+                }
+            }
+        }
+        return result;
+    }
+
+    private static void indexDirectory( File dir, String relativePath, Map<String, URL> result )
+    {
+        File[] files = dir.listFiles();
+        if ( files != null )
+        {
+            for ( File file: files )
+            {
+                String fileRelativePath = relativePath + file.getName();
+                if ( file.isDirectory() )
+                {
+                    indexDirectory( file, fileRelativePath + "/", result );
+                }
+                else
+                {
+                    try
+                    {
+                        result.put( fileRelativePath, file.toURI().toURL() );
+                    }
+                    catch ( MalformedURLException e )
+                    {
+                        // ignore, not indexed
+                    }
+                }
+            }
+        }
+    }
+
 }
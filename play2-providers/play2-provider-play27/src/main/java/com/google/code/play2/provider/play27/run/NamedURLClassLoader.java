@@ -23,6 +23,11 @@ import java.net.URLClassLoader;
 public class NamedURLClassLoader
     extends URLClassLoader
 {
+    static
+    {
+        registerAsParallelCapable();
+    }
+
     private String name;
 
     private URL[] urls; // for toString() only
@@ -34,6 +39,11 @@ public class NamedURLClassLoader
         this.urls = urls; // for toString() only
     }
 
+    public String getClassLoaderName()
+    {
+        return name;
+    }
+
     public String toString()
     {
         StringBuilder sb = new StringBuilder();
@@ -30,10 +30,14 @@ public class ReloaderPlayDevServer
 
     private Reloader reloader;
 
-    public ReloaderPlayDevServer( ReloadableServer server, Reloader reloader )
+    private IndexedURLClassLoader dependencyClassLoader; // optional
+
+    public ReloaderPlayDevServer( ReloadableServer server, Reloader reloader,
+                                  IndexedURLClassLoader dependencyClassLoader )
     {
         this.server = server;
         this.reloader = reloader;
+        this.dependencyClassLoader = dependencyClassLoader;
     }
 
     @Override
@@ -42,6 +46,10 @@ public class ReloaderPlayDevServer
     {
         server.stop();
         reloader.close();
+        if ( dependencyClassLoader != null )
+        {
+            dependencyClassLoader.close();
+        }
     }
 
 }
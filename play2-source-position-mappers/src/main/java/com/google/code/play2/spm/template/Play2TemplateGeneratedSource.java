@@ -22,6 +22,7 @@ import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -38,6 +39,8 @@ public class Play2TemplateGeneratedSource
 
     private Map<String, String> meta = Collections.emptyMap();
 
+    private Map<String, List<Pair>> parsedMeta = new ConcurrentHashMap<String, List<Pair>>();
+
     public Play2TemplateGeneratedSource( String[] metaSectionLines )
     {
         meta = new HashMap<String, String>( metaSectionLines.length );
@@ -103,6 +106,17 @@ public class Play2TemplateGeneratedSource
     }
 
     private List<Pair> metaData( String metaSectionName )
+    {
+        List<Pair> lines = parsedMeta.get( metaSectionName );
+        if ( lines == null )
+        {
+            lines = parseMetaData( metaSectionName );
+            parsedMeta.put( metaSectionName, lines );
+        }
+        return lines;
+    }
+
+    private List<Pair> parseMetaData( String metaSectionName )
     {
         List<Pair> lines = null;
 
@@ -19,6 +19,8 @@ package com.google.code.play2.spm.template;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
 import com.google.code.sbt.compiler.api.SourcePosition;
 import com.google.code.play2.spm.AbstractPlay2SourcePositionMapper;
@@ -32,6 +34,23 @@ public class Play2TemplateSourcePositionMapper extends AbstractPlay2SourcePositi
 {
     private static final String META_SEPARATOR = "-- GENERATED --";
 
+    private static final int CACHE_SIZE = 256;
+
+    /**
+     * Parsed generated sources shared by all mapper instances, least recently used entries are removed.
+     */
+    private static final Map<String, CachedGeneratedSource> CACHE =
+        new LinkedHashMap<String, CachedGeneratedSource>( 16, 0.75f, true )
+        {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry( Map.Entry<String, CachedGeneratedSource> eldest )
+            {
+                return size() > CACHE_SIZE;
+            }
+        };
+
     /**
      * Performs mapping from the position in generated source file to the position in Twirl template file it was
      * generated from.<br>
@@ -84,7 +103,50 @@ public class Play2TemplateSourcePositionMapper extends AbstractPlay2SourcePositi
         return result;
     }
 
+    /**
+     * Returns parsed metadata of generated source file.<br>
+     * <br>
+     * Parsed files are cached, cached value is used if file's modification time and length did not change.
+     *
+     * @param generatedFile generated source file
+     * @return generated source file metadata or {@code null} value if the file is not recognized
+     *         as generated from Twirl template file
+     * @throws IOException I/O exception during generated source file reading
+     */
     public Play2TemplateGeneratedSource getGeneratedSource( File generatedFile ) throws IOException
+    {
+        String path = generatedFile.getAbsolutePath();
+        long lastModified = generatedFile.lastModified();
+        long length = generatedFile.length();
+        synchronized ( CACHE )
+        {
+            CachedGeneratedSource cached = CACHE.get( path );
+            if ( cached != null && cached.lastModified == lastModified && cached.length == length )
+            {
+                return cached.source;
+            }
+        }
+
+        Play2TemplateGeneratedSource result = readGeneratedSource( generatedFile );
+        synchronized ( CACHE )
+        {
+            CACHE.put( path, new CachedGeneratedSource( lastModified, length, result ) );
+        }
+        return result;
+    }
+
+    /**
+     * Removes all parsed generated sources from cache.
+     */
+    public static void clearCache()
+    {
+        synchronized ( CACHE )
+        {
+            CACHE.clear();
+        }
+    }
+
+    private Play2TemplateGeneratedSource readGeneratedSource( File generatedFile ) throws IOException
     {
         Play2TemplateGeneratedSource result = null;
 
@@ -101,4 +163,20 @@ public class Play2TemplateSourcePositionMapper extends AbstractPlay2SourcePositi
         return result;
     }
 
+    private static class CachedGeneratedSource
+    {
+        final long lastModified;
+
+        final long length;
+
+        final Play2TemplateGeneratedSource source; // null if not generated from template
+
+        CachedGeneratedSource( long lastModified, long length, Play2TemplateGeneratedSource source )
+        {
+            this.lastModified = lastModified;
+            this.length = length;
+            this.source = source;
+        }
+    }
+
 }
@@ -18,10 +18,15 @@
 package com.google.code.play2.watcher.api;
 
 import java.io.File;
-//import java.util.Set;
+import java.util.Set;
+import java.util.concurrent.Callable;
 
 /**
  * Object providing file changes feedback.
+ * <br>
+ * <br>
+ * Methods are called on watcher threads, implementations should return quickly
+ * and process the changes asynchronously, otherwise change events can be lost.
  * 
  * @author <a href="mailto:gslowikowski@gmail.com">Grzegorz Slowikowski</a>
  */
@@ -33,6 +38,25 @@ public interface FileWatchCallback
      * @param changedFile changed file
      */
     void onChange( File changedFile );
-//  void onChange( Set<File> changedFiles );
+
+    /**
+     * Multiple files change feedback.
+     * <br>
+     * Used by watchers to report changes detected together (e.g. in one poll) in one call.
+     *
+     * @param changedFiles changed files
+     */
+    void onChange( Set<File> changedFiles );
+
+    /**
+     * Lost changes feedback.
+     * <br>
+     * Used by watchers which can lose change events (e.g. when their event queue overflows).
+     * The rescan can take long, it should be executed asynchronously and the files it returns
+     * processed as changed files.
+     *
+     * @param rescan task finding files changed since they were last reported
+     */
+    void onChangesLost( Callable<Set<File>> rescan );
 
 }
@@ -27,7 +27,14 @@ import java.nio.file.WatchEvent;
 import java.nio.file.WatchKey;
 import java.nio.file.WatchService;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
 
 import com.google.code.play2.watcher.api.AbstractFileWatcher;
 import com.google.code.play2.watcher.api.FileWatchCallback;
@@ -35,6 +42,12 @@ import com.google.code.play2.watcher.api.FileWatchLogger;
 
 /**
  * JDK7 file watcher.
+ * <br>
+ * <br>
+ * Modification times and lengths of watched files are recorded. When change events are lost (overflow
+ * event received), watched root directories containing directories with lost events are rescanned
+ * asynchronously (see {@link FileWatchCallback#onChangesLost(Callable)}) and only files different from
+ * the recorded state are reported.
  */
 public class JDK7FileWatcher
     extends AbstractFileWatcher
@@ -51,6 +64,14 @@ public class JDK7FileWatcher
 
     private boolean closed;
 
+    private List<File> watchedRoots;
+
+    // path to last modification time and length of every watched file, guarded by itself
+    private Map<String, long[]> snapshot = new HashMap<String, long[]>();
+
+    // watched roots to rescan after lost events, guarded by itself, rescan is scheduled when the first one is added
+    private Set<File> rootsToRescan = new HashSet<File>();
+
     /**
      * Creates JDK7 file watcher.
      * 
@@ -65,6 +86,11 @@ public class JDK7FileWatcher
         super( log, watchCallback );
 
         watcher = FileSystems.getDefault().newWatchService();
+        watchedRoots = new ArrayList<File>( dirsToWatch.size() );
+        for ( File dir : dirsToWatch )
+        {
+            watchedRoots.add( dir.getAbsoluteFile() );
+        }
         List<String> allPathsToWatch = allSubDirectories( dirsToWatch );
         for ( String path : allPathsToWatch )
         {
@@ -108,7 +134,7 @@ public class JDK7FileWatcher
         catch ( StackOverflowError e )
         {
             // non-fatal - ignore
-            log.warn( "StackOverflowError occured, ignoring" );
+            log.warn( "StackOverflowError occurred, ignoring" );
         }
         catch ( InterruptedException e )
         {
@@ -123,7 +149,7 @@ public class JDK7FileWatcher
         catch ( Throwable t )
         {
             // non-fatal - ignore
-            log.warn( String.format( "Throwable %s (%s) occured, ignoring", t.getClass().getName(), t.getMessage() ) );
+            log.warn( String.format( "Throwable %s (%s) occurred, ignoring", t.getClass().getName(), t.getMessage() ) );
         }
         finally
         {
@@ -139,11 +165,13 @@ public class JDK7FileWatcher
 
         List<WatchEvent<?>> events = watchKey.pollEvents();
 
+        Set<File> changedFiles = new HashSet<File>();
+        boolean overflow = false;
         for ( WatchEvent<?> event : events )
         {
             if ( event.kind() == StandardWatchEventKinds.OVERFLOW )
             {
-                log.warn( "Overflow event occured, some change events were lost" );
+                overflow = true;
             }
             else
             {
@@ -161,7 +189,15 @@ public class JDK7FileWatcher
                 {
                     debug( "[jdk7] File deleted \"%s\"", path );
                 }
-                watchCallback.onChange( file );
+                changedFiles.add( file );
+                if ( file.isFile() )
+                {
+                    updateSnapshot( file );
+                }
+                else if ( event.kind() == StandardWatchEventKinds.ENTRY_DELETE )
+                {
+                    removeFromSnapshot( file );
+                }
                 if ( event.kind() == StandardWatchEventKinds.ENTRY_CREATE )
                 {
                     if ( file.isDirectory() )
@@ -175,6 +211,17 @@ public class JDK7FileWatcher
             }
         }
 
+        if ( overflow )
+        {
+            // some change events were lost, on Linux all watch keys receive overflow events
+            scheduleRescan( ( (Path) watchKey.watchable() ).toFile() );
+        }
+
+        if ( !changedFiles.isEmpty() )
+        {
+            watchCallback.onChange( changedFiles );
+        }
+
         boolean valid = watchKey.reset();
         if ( !valid && log.isErrorEnabled() )
         {
@@ -211,6 +258,148 @@ public class JDK7FileWatcher
                 {
                     internalAllSubDirs( file, result );
                 }
+                else
+                {
+                    updateSnapshot( file );
+                }
+            }
+        }
+    }
+
+    private void scheduleRescan( File dir )
+    {
+        File root = rootOf( dir );
+        boolean first;
+        synchronized ( rootsToRescan )
+        {
+            first = rootsToRescan.isEmpty();
+            if ( !rootsToRescan.add( root ) )
+            {
+                return; // already scheduled
+            }
+        }
+        log.warn( String.format( "Overflow event occurred, rescanning \"%s\" directory", root.getPath() ) );
+        if ( first )
+        {
+            watchCallback.onChangesLost( new Callable<Set<File>>()
+            {
+                @Override
+                public Set<File> call()
+                {
+                    return rescan();
+                }
+            } );
+        }
+    }
+
+    private File rootOf( File dir )
+    {
+        String path = dir.getAbsolutePath();
+        for ( File root : watchedRoots )
+        {
+            String rootPath = root.getPath();
+            if ( path.equals( rootPath ) || path.startsWith( rootPath + File.separator ) )
+            {
+                return root;
+            }
+        }
+        return dir.getAbsoluteFile();
+    }
+
+    // executed asynchronously by watch callback
+    private Set<File> rescan()
+    {
+        Set<File> roots;
+        synchronized ( rootsToRescan )
+        {
+            roots = new HashSet<File>( rootsToRescan );
+            rootsToRescan.clear(); // overflows from now on schedule next rescan
+        }
+        Set<File> changedFiles = new HashSet<File>();
+        for ( File root : roots )
+        {
+            Set<String> existingFilePaths = new HashSet<String>();
+            rescan( root, existingFilePaths, changedFiles );
+            String rootPrefix = root.getPath() + File.separator;
+            synchronized ( snapshot )
+            {
+                for ( Iterator<String> iter = snapshot.keySet().iterator(); iter.hasNext(); )
+                {
+                    String path = iter.next();
+                    if ( path.startsWith( rootPrefix ) && !existingFilePaths.contains( path ) )
+                    {
+                        iter.remove();
+                        changedFiles.add( new File( path ) ); // deleted
+                    }
+                }
+            }
+        }
+        return changedFiles;
+    }
+
+    private void rescan( File dir, Set<String> existingFilePaths, Set<File> changedFiles )
+    {
+        File[] files = dir.listFiles();
+        if ( files == null )
+        {
+            return; // deleted
+        }
+        try
+        {
+            watchDir( dir ); // directories created during overflow are not watched yet
+        }
+        catch ( IOException e )
+        {
+            debug( "[jdk7] Cannot watch \"%s\" directory: %s", dir.getAbsolutePath(), e.getMessage() );
+        }
+        for ( File file : files )
+        {
+            if ( file.isDirectory() )
+            {
+                rescan( file, existingFilePaths, changedFiles );
+            }
+            else
+            {
+                existingFilePaths.add( file.getAbsolutePath() );
+                if ( updateSnapshot( file ) )
+                {
+                    changedFiles.add( file );
+                }
+            }
+        }
+    }
+
+    /**
+     * Records file modification time and length.
+     *
+     * @return true if the file is new or its modification time or length changed
+     */
+    private boolean updateSnapshot( File file )
+    {
+        long[] state = new long[] { file.lastModified(), file.length() };
+        long[] previousState;
+        synchronized ( snapshot )
+        {
+            previousState = snapshot.put( file.getAbsolutePath(), state );
+        }
+        return previousState == null || !Arrays.equals( previousState, state );
+    }
+
+    private void removeFromSnapshot( File file )
+    {
+        String path = file.getAbsolutePath();
+        synchronized ( snapshot )
+        {
+            if ( snapshot.remove( path ) == null ) // possibly a deleted directory
+            {
+                String prefix = path + File.separator;
+                for ( Iterator<String> iter = snapshot.keySet().iterator(); iter.hasNext(); )
+                {
+                    if ( iter.next().startsWith( prefix ) )
+                    {
+                        iter.remove();
+                    }
+                }
             }
         }
     }
@@ -18,7 +18,9 @@
 package com.google.code.play2.watcher.jnotify;
 
 import java.io.File;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
 import net.contentobjects.jnotify.JNotify;
 import net.contentobjects.jnotify.JNotifyException;
@@ -86,8 +88,10 @@ public class JNotifyFileWatcher
     public void fileRenamed( int wd, String rootPath, String oldName, String newName )
     {
         debug( "[jnotify] File renamed \"%s\", \"%s\" -> \"%s\"", rootPath, oldName, newName );
-        watchCallback.onChange( new File( rootPath, oldName ) );
-        watchCallback.onChange( new File( rootPath, newName ) );
+        Set<File> changedFiles = new HashSet<File>( 2 );
+        changedFiles.add( new File( rootPath, oldName ) );
+        changedFiles.add( new File( rootPath, newName ) );
+        watchCallback.onChange( changedFiles );
     }
 
     @Override /* FileWatcher */
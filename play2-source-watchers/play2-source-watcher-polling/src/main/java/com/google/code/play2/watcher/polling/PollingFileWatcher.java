@@ -98,6 +98,7 @@ public class PollingFileWatcher
         // Compare with previous ones
         if ( previousFileTimestamps != null ) // not first run
         {
+            Set<File> changedFiles = new HashSet<File>();
             Set<String> currentPaths = new HashSet<String>( currentFileTimestamps.keySet() );
             for ( Map.Entry<String, Long> previousEntry : previousFileTimestamps.entrySet() )
             {
@@ -109,21 +110,26 @@ public class PollingFileWatcher
                     if ( !currentTimestamp.equals( prevTimeStamp ) )
                     {
                         debug( "[polling] File modified \"%s\"", path );
-                        watchCallback.onChange( new File( path ) );
+                        changedFiles.add( new File( path ) );
                     }
                     currentPaths.remove( path ); // remove processed from map
                 }
                 else
                 {
                     debug( "[polling] File deleted \"%s\"", path );
-                    watchCallback.onChange( new File( path ) );
+                    changedFiles.add( new File( path ) );
                 }
             }
 
             for ( String path : currentPaths )
             {
                 debug( "[polling] File created \"%s\"", path );
-                watchCallback.onChange( new File( path ) );
+                changedFiles.add( new File( path ) );
+            }
+
+            if ( !changedFiles.isEmpty() )
+            {
+                watchCallback.onChange( changedFiles );
             }
         }
 